@@ -14,6 +14,7 @@ import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
@@ -26,6 +27,7 @@ import org.springframework.web.servlet.i18n.FixedLocaleResolver;
 @EnableAutoConfiguration
 @EnableTransactionManagement(order = Ordered.LOWEST_PRECEDENCE - 20)
 @EnableAspectJAutoProxy
+@EnableScheduling
 public class Application {
 
     public static void main(String[] args) {
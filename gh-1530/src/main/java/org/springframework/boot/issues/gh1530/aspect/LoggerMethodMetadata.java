@@ -0,0 +1,98 @@
+package org.springframework.boot.issues.gh1530.aspect;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.boot.issues.gh1530.annotation.MessageLogger;
+import org.springframework.boot.issues.gh1530.annotation.TransactionLogger;
+import org.springframework.boot.issues.gh1530.model.Message;
+import org.springframework.boot.issues.gh1530.model.Transaction;
+
+/**
+ * Logger annotations, transaction type and argument binding of an advised
+ * method, resolved once
+ * per {@link Method} so the advice itself does no reflection.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+final class LoggerMethodMetadata {
+
+    private static final ConcurrentMap<Method, LoggerMethodMetadata> CACHE = new ConcurrentHashMap<>();
+
+    private final int transactionIndex;
+    private final int messageIndex;
+    private final TransactionLogger transactionLogger;
+    private final MessageLogger messageLogger;
+    private final String transactionType;
+
+    private LoggerMethodMetadata(int transactionIndex, int messageIndex,
+            TransactionLogger transactionLogger, MessageLogger messageLogger) {
+        this.transactionIndex = transactionIndex;
+        this.messageIndex = messageIndex;
+        this.transactionLogger = transactionLogger;
+        this.messageLogger = messageLogger;
+        this.transactionType = transactionLogger != null ? transactionLogger.type() : null;
+    }
+
+    static LoggerMethodMetadata forMethod(Method method) {
+        LoggerMethodMetadata metadata = CACHE.get(method);
+        if (metadata == null) {
+            metadata = resolve(method);
+            LoggerMethodMetadata existing = CACHE.putIfAbsent(method, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+        return metadata;
+    }
+
+    private static LoggerMethodMetadata resolve(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        int transactionIndex = -1;
+        int messageIndex = -1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (transactionIndex < 0 && Transaction.class.isAssignableFrom(parameterTypes[i])) {
+                transactionIndex = i;
+            } else if (messageIndex < 0 && Message.class.isAssignableFrom(parameterTypes[i])) {
+                messageIndex = i;
+            }
+        }
+        if (transactionIndex < 0) {
+            throw new IllegalStateException("No Transaction argument on logged method " + method);
+        }
+        return new LoggerMethodMetadata(transactionIndex, messageIndex,
+                method.getAnnotation(TransactionLogger.class), method.getAnnotation(MessageLogger.class));
+    }
+
+    Transaction getTransaction(Object[] args) {
+        return (Transaction) args[transactionIndex];
+    }
+
+    Message getMessage(Object[] args) {
+        if (messageIndex < 0) {
+            throw new IllegalStateException("No Message argument on logged method");
+        }
+        return (Message) args[messageIndex];
+    }
+
+    /**
+     * @return the {@link TransactionLogger} annotation, or null
+     */
+    TransactionLogger getTransactionLogger() {
+        return transactionLogger;
+    }
+
+    /**
+     * @return the {@link MessageLogger} annotation, or null
+     */
+    MessageLogger getMessageLogger() {
+        return messageLogger;
+    }
+
+    /**
+     * @return the type of the {@link TransactionLogger} annotation, or null
+     */
+    String getTransactionType() {
+        return transactionType;
+    }
+
+}
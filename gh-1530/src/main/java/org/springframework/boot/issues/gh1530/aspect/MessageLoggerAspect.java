@@ -8,7 +8,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.issues.gh1530.BusinessLogicException;
-import org.springframework.boot.issues.gh1530.annotation.MessageLogger;
 import org.springframework.boot.issues.gh1530.model.Message;
 import org.springframework.boot.issues.gh1530.model.Transaction;
 import org.springframework.boot.issues.gh1530.service.MessageLoggerComponent;
@@ -33,10 +32,11 @@ public class MessageLoggerAspect {
     @Around("execution(@org.springframework.boot.issues.gh1530.annotation.MessageLogger * *(..))")
     public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
 
-        MessageLogger annotation = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(MessageLogger.class);
+        LoggerMethodMetadata metadata = LoggerMethodMetadata.forMethod(((MethodSignature) joinPoint.getSignature()).getMethod());
 
-        Transaction transaction = (Transaction) joinPoint.getArgs()[0];
-        Message message = (Message) joinPoint.getArgs()[1];
+        Object[] args = joinPoint.getArgs();
+        Transaction transaction = metadata.getTransaction(args);
+        Message message = metadata.getMessage(args);
 
         logger.info("MESSAGE_LOGGER_INPUT, {}, {}", transaction, message);
         messageLoggerComponent.logMessage(message);
@@ -8,7 +8,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.issues.gh1530.BusinessLogicException;
-import org.springframework.boot.issues.gh1530.annotation.TransactionLogger;
 import org.springframework.boot.issues.gh1530.model.Transaction;
 import org.springframework.boot.issues.gh1530.service.TransactionLoggerComponent;
 import org.springframework.core.Ordered;
@@ -28,9 +27,12 @@ public class TransactionLoggerAspect {
     @Around("execution(@org.springframework.boot.issues.gh1530.annotation.TransactionLogger * *(..))")
     public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
 
-        TransactionLogger annotation = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(TransactionLogger.class);
+        LoggerMethodMetadata metadata = LoggerMethodMetadata.forMethod(((MethodSignature) joinPoint.getSignature()).getMethod());
 
-        Transaction transaction = (Transaction) joinPoint.getArgs()[0];
+        Transaction transaction = metadata.getTransaction(joinPoint.getArgs());
+        if (!metadata.getTransactionType().equals(transaction.getType())) {
+            logger.warn("TRANSACTION_LOGGER_TYPE: expected {}. {}", metadata.getTransactionType(), transaction);
+        }
 
         logger.info("TRANSACTION_LOGGER_START, {}", transaction);
         transactionLoggerComponent.logTransaction(transaction);
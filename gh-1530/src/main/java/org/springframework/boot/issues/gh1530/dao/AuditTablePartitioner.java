@@ -0,0 +1,407 @@
+package org.springframework.boot.issues.gh1530.dao;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.issues.gh1530.model.TransactionIds;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.DatabaseMetaDataCallback;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Time-bucketed audit tables.
+ *
+ * With {@code audit.partition.enabled=true} the audit DAOs write into one
+ * table per day or month, e.g. {@code log_transaction_20141017}, created on
+ * first use from the base table of schema.sql. The bucket of a row is taken
+ * from the timestamp encoded in its transaction id (see
+ * {@link TransactionIds}), or the current time for other ids. The base table
+ * is still read, so rows written before partitioning stay visible. Expired
+ * buckets are dropped as a whole by {@link #dropExpiredBuckets()}.
+ *
+ * The known buckets are loaded from the database metadata at startup and
+ * again when a bucket another node sharing the database may have created is
+ * not known yet.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+@Component
+@ConfigurationProperties(prefix = "audit.partition")
+public class AuditTablePartitioner {
+
+    public enum Granularity {
+
+        DAILY("yyyyMMdd", Calendar.DAY_OF_MONTH),
+        MONTHLY("yyyyMM", Calendar.MONTH);
+
+        private final String pattern;
+        private final int calendarField;
+
+        private Granularity(String pattern, int calendarField) {
+            this.pattern = pattern;
+            this.calendarField = calendarField;
+        }
+
+    }
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /**
+     * Minimum time in milliseconds between two metadata lookups of
+     * {@link #readTables} for a current bucket that does not exist yet.
+     */
+    private static final long REFRESH_INTERVAL = 5000;
+
+    Logger logger = LoggerFactory.getLogger(AuditTablePartitioner.class);
+
+    protected DataSource dataSource;
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    /**
+     * Write audit rows into time-bucketed tables.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Time span of one bucket.
+     */
+    private Granularity granularity = Granularity.DAILY;
+
+    /**
+     * Number of past buckets kept besides the current one.
+     */
+    private int retention = 30;
+
+    private final ConcurrentMap<String, NavigableSet<String>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> refreshed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Period> periods = new ConcurrentHashMap<>();
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Loads the existing buckets of a base table, so they are covered by the
+     * retention job right after startup.
+     */
+    public void register(String baseTable) {
+        if (enabled) {
+            bucketsOf(baseTable);
+        }
+    }
+
+    /**
+     * @return the table a new row of the given transaction goes to, created if
+     * needed. Rows of transactions older than the retention period go to the
+     * current bucket, so an expired bucket is never created again.
+     */
+    public String insertTable(String baseTable, String keyColumn, String transactionId) {
+        if (!enabled) {
+            return baseTable;
+        }
+        Period period = periodOf(baseTable);
+        long timestamp = TransactionIds.timestampOf(transactionId);
+        String table = timestamp < 0 ? period.current : bucketTable(baseTable, timestamp);
+        if (table.compareTo(period.oldestKept) < 0) {
+            table = period.current;
+        }
+        NavigableSet<String> known = bucketsOf(baseTable);
+        if (!known.contains(table)) {
+            createBucket(baseTable, keyColumn, table, known);
+        }
+        return table;
+    }
+
+    /**
+     * @return the tables that may hold rows of the given transaction, most
+     * likely first
+     */
+    public List<String> tablesFor(String baseTable, String transactionId) {
+        if (!enabled) {
+            return Collections.singletonList(baseTable);
+        }
+        long timestamp = TransactionIds.timestampOf(transactionId);
+        if (timestamp >= 0) {
+            String table = bucketTable(baseTable, timestamp);
+            if (bucketsOf(baseTable).contains(table)) {
+                return Collections.singletonList(table);
+            }
+            if (table.compareTo(periodOf(baseTable).oldestKept) >= 0 && refreshBuckets(baseTable).contains(table)) {
+                return Collections.singletonList(table);
+            }
+            // a transaction older than the retention period, see insertTable
+        }
+        List<String> tables = readTables(baseTable);
+        Collections.reverse(tables);
+        return tables;
+    }
+
+    /**
+     * @return the base table followed by every bucket, oldest first. Buckets
+     * the retention job may have dropped on another node are left out.
+     */
+    public List<String> readTables(String baseTable) {
+        List<String> tables = new ArrayList<>();
+        tables.add(baseTable);
+        if (enabled) {
+            Period period = periodOf(baseTable);
+            NavigableSet<String> known = bucketsOf(baseTable);
+            if (!known.contains(period.current)) {
+                Long refreshedAt = refreshed.get(baseTable);
+                if (refreshedAt == null || System.currentTimeMillis() - refreshedAt >= REFRESH_INTERVAL) {
+                    known = refreshBuckets(baseTable);
+                }
+            }
+            tables.addAll(known.tailSet(period.oldestKeptWithGrace, true));
+        }
+        return tables;
+    }
+
+    /**
+     * Drops every bucket older than the retention period. A bucket is
+     * dropped as a whole, there are no row-level deletes.
+     *
+     * A bucket another node sharing the database dropped first is skipped.
+     *
+     * One more bucket than the retention is kept: {@link #insertTable} may
+     * have routed a row to the oldest bucket of the retention period just
+     * before it expired, and the row may not be written yet.
+     */
+    @Scheduled(cron = "${audit.partition.retention-cron:0 5 0 * * *}")
+    public synchronized void dropExpiredBuckets() {
+        if (!enabled) {
+            return;
+        }
+        for (String baseTable : buckets.keySet()) {
+            String oldestKept = periodOf(baseTable).oldestKeptWithGrace;
+            NavigableSet<String> known = bucketsOf(baseTable);
+            for (String table : new ArrayList<>(known.headSet(oldestKept, false))) {
+                known.remove(table);
+                logger.info("dropping expired audit table: {}", table);
+                try {
+                    jdbcTemplate.execute("drop table " + table);
+                } catch (DataAccessException ex) {
+                    if (loadBuckets(baseTable).contains(table)) {
+                        // retried by the next run
+                        logger.error("could not drop expired audit table: " + table, ex);
+                        known.add(table);
+                    } else {
+                        logger.info("expired audit table already dropped: {}", table);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the bucket names of the current period, computed once per period
+     */
+    private Period periodOf(String baseTable) {
+        long now = System.currentTimeMillis();
+        Period period = periods.get(baseTable);
+        if (period == null || !period.contains(now)) {
+            period = new Period(baseTable, now);
+            periods.put(baseTable, period);
+        }
+        return period;
+    }
+
+    protected String bucketTable(String baseTable, long timestamp) {
+        Period period = periodOf(baseTable);
+        if (period.contains(timestamp)) {
+            return period.current;
+        }
+        return formatBucketTable(baseTable, timestamp);
+    }
+
+    private String formatBucketTable(String baseTable, long timestamp) {
+        SimpleDateFormat format = new SimpleDateFormat(granularity.pattern, Locale.ROOT);
+        format.setTimeZone(UTC);
+        return baseTable + "_" + format.format(new Date(timestamp));
+    }
+
+    private NavigableSet<String> bucketsOf(String baseTable) {
+        NavigableSet<String> known = buckets.get(baseTable);
+        if (known == null) {
+            known = new ConcurrentSkipListSet<>(loadBuckets(baseTable));
+            NavigableSet<String> existing = buckets.putIfAbsent(baseTable, known);
+            if (existing != null) {
+                known = existing;
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Adds the buckets created by other nodes since the last lookup.
+     */
+    private synchronized NavigableSet<String> refreshBuckets(String baseTable) {
+        NavigableSet<String> known = bucketsOf(baseTable);
+        known.addAll(loadBuckets(baseTable));
+        refreshed.put(baseTable, System.currentTimeMillis());
+        return known;
+    }
+
+    private List<String> loadBuckets(final String baseTable) {
+        final Pattern bucketName = Pattern.compile(
+                Pattern.quote(baseTable) + "_\\d{" + granularity.pattern.length() + "}",
+                Pattern.CASE_INSENSITIVE);
+        try {
+            @SuppressWarnings("unchecked")
+            List<String> tables = (List<String>) JdbcUtils.extractDatabaseMetaData(dataSource, new DatabaseMetaDataCallback() {
+                @Override
+                public Object processMetaData(DatabaseMetaData dbmd) throws SQLException {
+                    String escape = dbmd.getSearchStringEscape();
+                    String namePattern = (baseTable + "_").replace("_", escape + "_") + "%";
+                    List<String> tables = new ArrayList<>();
+                    try (ResultSet rs = dbmd.getTables(null, null, namePattern.toUpperCase(Locale.ROOT), new String[]{"TABLE"})) {
+                        while (rs.next()) {
+                            String table = rs.getString("TABLE_NAME").toLowerCase(Locale.ROOT);
+                            if (bucketName.matcher(table).matches()) {
+                                tables.add(table);
+                            }
+                        }
+                    }
+                    return tables;
+                }
+            });
+            return tables;
+        } catch (MetaDataAccessException ex) {
+            throw new IllegalStateException("Could not list the buckets of " + baseTable, ex);
+        }
+    }
+
+    /**
+     * Creates the bucket in its own transaction, so a rollback of the batch
+     * that needed it does not drop it again. Another node sharing the database
+     * may have created it in the meantime, which is fine.
+     */
+    private synchronized void createBucket(final String baseTable, final String keyColumn,
+            final String table, NavigableSet<String> known) {
+        if (known.contains(table)) {
+            return;
+        }
+        logger.info("creating audit table: {}", table);
+        try {
+            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    jdbcTemplate.execute("create table " + table + " as select * from " + baseTable + " with no data");
+                    jdbcTemplate.execute("create index ix_" + table + "_" + keyColumn + " on " + table + " (" + keyColumn + ")");
+                }
+            });
+        } catch (DataAccessException ex) {
+            if (!loadBuckets(baseTable).contains(table)) {
+                throw ex;
+            }
+            logger.info("audit table already exists: {}", table);
+        }
+        known.add(table);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(Granularity granularity) {
+        this.granularity = granularity;
+        periods.clear();
+    }
+
+    public int getRetention() {
+        return retention;
+    }
+
+    public void setRetention(int retention) {
+        this.retention = retention;
+        periods.clear();
+    }
+
+    /**
+     * The current bucket of a base table and the cutoffs of the retention
+     * period, valid from the start of the bucket until the start of the next
+     * one.
+     */
+    private final class Period {
+
+        private final long start;
+        private final long end;
+        private final String current;
+        private final String oldestKept;
+        private final String oldestKeptWithGrace;
+
+        private Period(String baseTable, long now) {
+            Calendar calendar = Calendar.getInstance(UTC, Locale.ROOT);
+            calendar.setTimeInMillis(now);
+            if (granularity == Granularity.MONTHLY) {
+                calendar.set(Calendar.DAY_OF_MONTH, 1);
+            }
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            start = calendar.getTimeInMillis();
+            calendar.add(granularity.calendarField, 1);
+            end = calendar.getTimeInMillis();
+            current = formatBucketTable(baseTable, start);
+            calendar.setTimeInMillis(start);
+            calendar.add(granularity.calendarField, -retention);
+            oldestKept = formatBucketTable(baseTable, calendar.getTimeInMillis());
+            calendar.add(granularity.calendarField, -1);
+            oldestKeptWithGrace = formatBucketTable(baseTable, calendar.getTimeInMillis());
+        }
+
+        private boolean contains(long timestamp) {
+            return timestamp >= start && timestamp < end;
+        }
+
+    }
+
+}
@@ -1,31 +1,54 @@
 package org.springframework.boot.issues.gh1530.dao;
 
 import java.sql.SQLException;
+import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.springframework.boot.issues.gh1530.model.Message;
 
 @Repository
 public class MessageDao {
 
+    static final public String TABLE = "log_message";
+    static final public String KEY_COLUMN = "m_tr_id";
     static final public String SELECTED_FIELDS = "m_tr_id, m_message, m_status";
 
+    /**
+     * JDBC fetch size of the streaming readers.
+     */
+    static final public int STREAM_FETCH_SIZE = 500;
+
     protected DataSource dataSource;
     protected JdbcTemplate jdbcTemplate;
+    protected JdbcTemplate streamingJdbcTemplate;
+
+    @Autowired
+    protected AuditTablePartitioner partitioner;
 
     @Autowired
     public void setDataSource(DataSource dataSource) {
         this.dataSource = dataSource;
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
+    }
+
+    @PostConstruct
+    public void init() {
+        partitioner.register(TABLE);
     }
 
     public void create(Message instance) {
-        String sql = "insert into log_message (" + SELECTED_FIELDS + ") values (?,?,?)";
+        String table = partitioner.insertTable(TABLE, KEY_COLUMN, instance.getTransactionId());
+        String sql = "insert into " + table + " (" + SELECTED_FIELDS + ") values (?,?,?)";
         Object[] params = new Object[]{
             instance.getTransactionId(),
             instance.getMessage(),
@@ -34,15 +57,53 @@ public class MessageDao {
         this.jdbcTemplate.update(sql, params);
     }
 
+    public void createBatch(List<Message> instances) {
+        Map<String, List<Object[]>> batchParamsByTable = new LinkedHashMap<>();
+        for (Message instance : instances) {
+            String table = partitioner.insertTable(TABLE, KEY_COLUMN, instance.getTransactionId());
+            List<Object[]> batchParams = batchParamsByTable.get(table);
+            if (batchParams == null) {
+                batchParams = new ArrayList<Object[]>(instances.size());
+                batchParamsByTable.put(table, batchParams);
+            }
+            batchParams.add(new Object[]{
+                instance.getTransactionId(),
+                instance.getMessage(),
+                instance.getStatus()
+            });
+        }
+        for (Map.Entry<String, List<Object[]>> entry : batchParamsByTable.entrySet()) {
+            String sql = "insert into " + entry.getKey() + " (" + SELECTED_FIELDS + ") values (?,?,?)";
+            this.jdbcTemplate.batchUpdate(sql, entry.getValue());
+        }
+    }
+
     public List<Message> readAll() {
-        String query = "select " + SELECTED_FIELDS + " from log_message";
-        List<Message> retVal = this.jdbcTemplate.query(query, new MessageRowMapper());
+        List<Message> retVal = new ArrayList<>();
+        for (String table : partitioner.readTables(TABLE)) {
+            String query = "select " + SELECTED_FIELDS + " from " + table;
+            retVal.addAll(this.jdbcTemplate.query(query, new MessageRowMapper()));
+        }
         return retVal;
     }
 
+    /**
+     * Streams every row to the callback without building a list. Some
+     * drivers (e.g. PostgreSQL) only honour the fetch size inside a
+     * transaction.
+     */
+    public void readAll(RowCallback<Message> callback) {
+        for (String table : partitioner.readTables(TABLE)) {
+            String query = "select " + SELECTED_FIELDS + " from " + table;
+            this.streamingJdbcTemplate.query(query, new StreamingRowCallbackHandler<>(new MessageRowMapper(), callback));
+        }
+    }
+
     public void deleteAll() {
-        String sql = "delete from log_message";
-        int updRows = this.jdbcTemplate.update(sql);
+        for (String table : partitioner.readTables(TABLE)) {
+            String sql = "delete from " + table;
+            int updRows = this.jdbcTemplate.update(sql);
+        }
     }
 
     protected class MessageRowMapper implements RowMapper<Message> {
@@ -15,13 +15,21 @@ public class MyModelDao {
 
     static final public String SELECTED_FIELDS = "my_value";
 
+    /**
+     * JDBC fetch size of the streaming readers.
+     */
+    static final public int STREAM_FETCH_SIZE = 500;
+
     protected DataSource dataSource;
     protected JdbcTemplate jdbcTemplate;
+    protected JdbcTemplate streamingJdbcTemplate;
 
     @Autowired
     public void setDataSource(DataSource dataSource) {
         this.dataSource = dataSource;
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
     }
 
     public void create(MyModel instance) {
@@ -38,6 +46,16 @@ public class MyModelDao {
         return retVal;
     }
 
+    /**
+     * Streams every row to the callback without building a list. Some
+     * drivers (e.g. PostgreSQL) only honour the fetch size inside a
+     * transaction.
+     */
+    public void readAll(RowCallback<MyModel> callback) {
+        String query = "select " + SELECTED_FIELDS + " from my_data";
+        this.streamingJdbcTemplate.query(query, new StreamingRowCallbackHandler<>(new MyModelRowMapper(), callback));
+    }
+
     public void deleteAll() {
         String sql = "delete from my_data";
         int updRows = this.jdbcTemplate.update(sql);
@@ -0,0 +1,13 @@
+package org.springframework.boot.issues.gh1530.dao;
+
+/**
+ * Callback for the streaming readers of the DAOs. Each row is mapped and
+ * handed over one by one, so nothing is collected in memory.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ * @param <T> model type
+ */
+public interface RowCallback<T> {
+
+    void processRow(T row);
+
+}
@@ -0,0 +1,30 @@
+package org.springframework.boot.issues.gh1530.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Maps each row with a {@link RowMapper} and passes it to a
+ * {@link RowCallback}.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ * @param <T> model type
+ */
+class StreamingRowCallbackHandler<T> implements RowCallbackHandler {
+
+    private final RowMapper<T> rowMapper;
+    private final RowCallback<T> callback;
+    private int rowNum = 0;
+
+    StreamingRowCallbackHandler(RowMapper<T> rowMapper, RowCallback<T> callback) {
+        this.rowMapper = rowMapper;
+        this.callback = callback;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        callback.processRow(rowMapper.mapRow(rs, rowNum++));
+    }
+
+}
@@ -1,32 +1,65 @@
 package org.springframework.boot.issues.gh1530.dao;
 
 import java.sql.SQLException;
+import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.springframework.boot.issues.gh1530.model.Transaction;
 
 @Repository
 public class TransactionDao {
 
+    static final public String TABLE = "log_transaction";
+    static final public String KEY_COLUMN = "tr_id";
     static final public String SELECTED_FIELDS = "tr_id, tr_type, tr_status";
 
+    /**
+     * JDBC fetch size of the streaming readers.
+     */
+    static final public int STREAM_FETCH_SIZE = 500;
+
+    private static final Comparator<Transaction> BY_TRANSACTION_ID = new Comparator<Transaction>() {
+        @Override
+        public int compare(Transaction a, Transaction b) {
+            return a.getTransactionId().compareTo(b.getTransactionId());
+        }
+    };
+
     protected DataSource dataSource;
     protected JdbcTemplate jdbcTemplate;
+    protected JdbcTemplate streamingJdbcTemplate;
+
+    @Autowired
+    protected AuditTablePartitioner partitioner;
 
     @Autowired
     public void setDataSource(DataSource dataSource) {
         this.dataSource = dataSource;
         this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
+    }
+
+    @PostConstruct
+    public void init() {
+        partitioner.register(TABLE);
     }
 
     public void create(Transaction instance) {
-        String sql = "insert into log_transaction (" + SELECTED_FIELDS + ") values (?,?,?)";
+        String table = partitioner.insertTable(TABLE, KEY_COLUMN, instance.getTransactionId());
+        String sql = "insert into " + table + " (" + SELECTED_FIELDS + ") values (?,?,?)";
         Object[] params = new Object[]{
             instance.getTransactionId(),
             instance.getType(),
@@ -35,37 +68,211 @@ public class TransactionDao {
         this.jdbcTemplate.update(sql, params);
     }
 
+    public void createBatch(List<Transaction> instances) {
+        Map<String, List<Object[]>> batchParamsByTable = new LinkedHashMap<>();
+        for (Transaction instance : instances) {
+            String table = partitioner.insertTable(TABLE, KEY_COLUMN, instance.getTransactionId());
+            List<Object[]> batchParams = batchParamsByTable.get(table);
+            if (batchParams == null) {
+                batchParams = new ArrayList<Object[]>(instances.size());
+                batchParamsByTable.put(table, batchParams);
+            }
+            batchParams.add(new Object[]{
+                instance.getTransactionId(),
+                instance.getType(),
+                instance.getStatus()
+            });
+        }
+        for (Map.Entry<String, List<Object[]>> entry : batchParamsByTable.entrySet()) {
+            String sql = "insert into " + entry.getKey() + " (" + SELECTED_FIELDS + ") values (?,?,?)";
+            this.jdbcTemplate.batchUpdate(sql, entry.getValue());
+        }
+    }
+
     public Transaction read(String transactionId) {
-        String query = "select " + SELECTED_FIELDS + " from log_transaction where tr_id = ?";
-        Transaction retVal = this.jdbcTemplate.queryForObject(query, new TransactionRowMapper(), transactionId);
-        return retVal;
+        List<Transaction> retVal = new ArrayList<>();
+        for (String table : partitioner.tablesFor(TABLE, transactionId)) {
+            String query = "select " + SELECTED_FIELDS + " from " + table + " where tr_id = ?";
+            retVal.addAll(this.jdbcTemplate.query(query, new TransactionRowMapper(), transactionId));
+            if (!retVal.isEmpty()) {
+                break;
+            }
+        }
+        return DataAccessUtils.requiredSingleResult(retVal);
     }
 
     public List<Transaction> readAll() {
-        String query = "select " + SELECTED_FIELDS + " from log_transaction";
-        List<Transaction> retVal = this.jdbcTemplate.query(query, new TransactionDao.TransactionRowMapper());
+        List<Transaction> retVal = new ArrayList<>();
+        for (String table : partitioner.readTables(TABLE)) {
+            String query = "select " + SELECTED_FIELDS + " from " + table;
+            retVal.addAll(this.jdbcTemplate.query(query, new TransactionDao.TransactionRowMapper()));
+        }
         return retVal;
     }
 
     public void update(Transaction instance) {
-        String sql = "update log_transaction set tr_type = ?, tr_status = ? "
-                + "where tr_id = ?";
+        String sql = null;
+        int updRows = 0;
+        for (String table : partitioner.tablesFor(TABLE, instance.getTransactionId())) {
+            sql = "update " + table + " set tr_type = ?, tr_status = ? "
+                    + "where tr_id = ?";
 
-        Object[] params = new Object[]{
-            instance.getType(),
-            instance.getStatus(),
-            instance.getTransactionId()
-        };
+            Object[] params = new Object[]{
+                instance.getType(),
+                instance.getStatus(),
+                instance.getTransactionId()
+            };
 
-        int updRows = this.jdbcTemplate.update(sql, params);
+            updRows = this.jdbcTemplate.update(sql, params);
+            if (updRows != 0) {
+                break;
+            }
+        }
         if (updRows != 1) {
             throw new JdbcUpdateAffectedIncorrectNumberOfRowsException(sql, 1, updRows);
         }
     }
 
+    /**
+     * Updates each row in its most likely table with a batch update, rows
+     * not found there are retried one by one with {@link #update}.
+     */
+    public void updateBatch(List<Transaction> instances) {
+        Map<String, List<Transaction>> instancesByTable = new LinkedHashMap<>();
+        List<Transaction> retries = new ArrayList<>();
+        for (Transaction instance : instances) {
+            List<String> tables = partitioner.tablesFor(TABLE, instance.getTransactionId());
+            if (tables.isEmpty()) {
+                retries.add(instance);
+                continue;
+            }
+            List<Transaction> tableInstances = instancesByTable.get(tables.get(0));
+            if (tableInstances == null) {
+                tableInstances = new ArrayList<>();
+                instancesByTable.put(tables.get(0), tableInstances);
+            }
+            tableInstances.add(instance);
+        }
+
+        for (Map.Entry<String, List<Transaction>> entry : instancesByTable.entrySet()) {
+            String sql = "update " + entry.getKey() + " set tr_type = ?, tr_status = ? "
+                    + "where tr_id = ?";
+
+            List<Transaction> tableInstances = entry.getValue();
+            List<Object[]> batchParams = new ArrayList<Object[]>(tableInstances.size());
+            for (Transaction instance : tableInstances) {
+                batchParams.add(new Object[]{
+                    instance.getType(),
+                    instance.getStatus(),
+                    instance.getTransactionId()
+                });
+            }
+            int[] updRows = this.jdbcTemplate.batchUpdate(sql, batchParams);
+            for (int i = 0; i < updRows.length; i++) {
+                if (updRows[i] == 0) {
+                    retries.add(tableInstances.get(i));
+                }
+            }
+        }
+
+        for (Transaction instance : retries) {
+            update(instance);
+        }
+    }
+
+    /**
+     * Streams every row to the callback without building a list. Some
+     * drivers (e.g. PostgreSQL) only honour the fetch size inside a
+     * transaction.
+     */
+    public void readAll(RowCallback<Transaction> callback) {
+        for (String table : partitioner.readTables(TABLE)) {
+            String query = "select " + SELECTED_FIELDS + " from " + table;
+            this.streamingJdbcTemplate.query(query, new StreamingRowCallbackHandler<>(new TransactionRowMapper(), callback));
+        }
+    }
+
+    /**
+     * Reads the next page ordered by tr_id, starting after the given id. Every
+     * table is paged on its own tr_id index and the pages are merged, so a
+     * page costs one indexed range scan of at most pageSize rows per table.
+     * tr_id is not unique: the rows of the last id are never split across
+     * pages, so a page may hold more than pageSize rows.
+     * @param afterTransactionId last tr_id of the previous page, null for the
+     * first page
+     * @param pageSize number of rows, more only for duplicate ids
+     */
+    public List<Transaction> readPage(String afterTransactionId, int pageSize) {
+        List<String> tables = partitioner.readTables(TABLE);
+        if (tables.size() == 1) {
+            return readPage(tables.get(0), afterTransactionId, pageSize);
+        }
+        List<Transaction> merged = new ArrayList<>();
+        for (String table : tables) {
+            merged.addAll(readPage(table, afterTransactionId, pageSize));
+        }
+        Collections.sort(merged, BY_TRANSACTION_ID);
+        if (merged.size() <= pageSize) {
+            return merged;
+        }
+        int end = pageSize;
+        String lastTransactionId = merged.get(end - 1).getTransactionId();
+        while (end < merged.size() && merged.get(end).getTransactionId().equals(lastTransactionId)) {
+            end++;
+        }
+        return new ArrayList<>(merged.subList(0, end));
+    }
+
+    /**
+     * Walks the whole table page by page with keyset pagination on tr_id, one
+     * bucket after the other, oldest first. Rows are in tr_id order within a
+     * bucket. Only one page is held in memory and no cursor stays open
+     * between pages.
+     */
+    public void readAllPaged(int pageSize, RowCallback<Transaction> callback) {
+        for (String table : partitioner.readTables(TABLE)) {
+            String lastTransactionId = null;
+            List<Transaction> page;
+            do {
+                page = readPage(table, lastTransactionId, pageSize);
+                for (Transaction transaction : page) {
+                    callback.processRow(transaction);
+                }
+                if (!page.isEmpty()) {
+                    lastTransactionId = page.get(page.size() - 1).getTransactionId();
+                }
+            } while (page.size() >= pageSize);
+        }
+    }
+
+    /**
+     * Reads the next page of one table. A full page is completed with the
+     * remaining rows of its last id, the next page starts after that id.
+     */
+    private List<Transaction> readPage(String table, String afterTransactionId, int pageSize) {
+        String query = "select " + SELECTED_FIELDS + " from " + table
+                + (afterTransactionId == null ? "" : " where tr_id > ?")
+                + " order by tr_id fetch first " + pageSize + " rows only";
+        Object[] params = afterTransactionId == null
+                ? new Object[0]
+                : new Object[]{afterTransactionId};
+        List<Transaction> retVal = this.jdbcTemplate.query(query, new TransactionRowMapper(), params);
+        if (retVal.size() == pageSize) {
+            String lastTransactionId = retVal.get(retVal.size() - 1).getTransactionId();
+            while (!retVal.isEmpty() && retVal.get(retVal.size() - 1).getTransactionId().equals(lastTransactionId)) {
+                retVal.remove(retVal.size() - 1);
+            }
+            retVal.addAll(this.jdbcTemplate.query("select " + SELECTED_FIELDS + " from " + table + " where tr_id = ?",
+                    new TransactionRowMapper(), lastTransactionId));
+        }
+        return retVal;
+    }
+
     public void deleteAll() {
-        String sql = "delete from log_transaction";
-        int updRows = this.jdbcTemplate.update(sql);
+        for (String table : partitioner.readTables(TABLE)) {
+            String sql = "delete from " + table;
+            int updRows = this.jdbcTemplate.update(sql);
+        }
     }
 
     protected class TransactionRowMapper implements RowMapper<Transaction> {
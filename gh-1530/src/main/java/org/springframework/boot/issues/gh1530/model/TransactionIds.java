@@ -0,0 +1,39 @@
+package org.springframework.boot.issues.gh1530.model;
+
+import java.util.UUID;
+
+/**
+ * Transaction id generator. The first 12 hex digits of an id are its
+ * creation time in epoch milliseconds, the rest comes from a random UUID,
+ * e.g. {@code 0158b2c1a3f0-4b7e-9c1d-3f2a6e8b5d10}. The DAOs use the
+ * timestamp to locate the time-bucketed audit table of a transaction.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+public final class TransactionIds {
+
+    private static final int TIMESTAMP_LENGTH = 12;
+
+    private TransactionIds() {
+    }
+
+    public static String newTransactionId() {
+        return String.format("%012x", System.currentTimeMillis()) + UUID.randomUUID().toString().substring(13);
+    }
+
+    /**
+     * @return the creation time encoded in the id, or -1 for ids that were not
+     * generated by {@link #newTransactionId()} (e.g. plain UUIDs)
+     */
+    public static long timestampOf(String transactionId) {
+        if (transactionId == null || transactionId.length() <= TIMESTAMP_LENGTH
+                || transactionId.charAt(TIMESTAMP_LENGTH) != '-') {
+            return -1;
+        }
+        try {
+            return Long.parseLong(transactionId.substring(0, TIMESTAMP_LENGTH), 16);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+}
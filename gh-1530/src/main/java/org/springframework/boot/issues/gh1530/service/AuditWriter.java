@@ -0,0 +1,372 @@
+package org.springframework.boot.issues.gh1530.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.issues.gh1530.dao.MessageDao;
+import org.springframework.boot.issues.gh1530.dao.TransactionDao;
+import org.springframework.boot.issues.gh1530.model.Message;
+import org.springframework.boot.issues.gh1530.model.Transaction;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Audit writer for log_transaction and log_message rows.
+ *
+ * In synchronous mode (the default) every audit row is written immediately
+ * in its own REQUIRES_NEW transaction. With {@code audit.async.enabled=true}
+ * the rows are put on a bounded queue and a background flusher writes them
+ * with JDBC batch updates, one transaction per batch. The queue is drained on
+ * shutdown.
+ *
+ * Producers hold the read lock while they queue, and shutdown holds the write
+ * lock until the queue is drained. So no row is queued after the drain, no
+ * producer is left blocked on a full queue, and rows written synchronously
+ * after shutdown can't overtake queued ones.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+@Component
+@ConfigurationProperties(prefix = "audit.async")
+public class AuditWriter {
+
+    Logger logger = LoggerFactory.getLogger(AuditWriter.class);
+
+    @Autowired
+    TransactionDao transactionDao;
+
+    @Autowired
+    MessageDao messageDao;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    /**
+     * Write audit rows with the background flusher.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of audit rows waiting for the flusher.
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * Maximum number of audit rows written in one batch.
+     */
+    private int flushSize = 100;
+
+    /**
+     * Maximum time in milliseconds a row waits for its batch to fill up.
+     */
+    private long flushInterval = 500;
+
+    private TransactionTemplate transactionTemplate;
+    private BlockingQueue<AuditEvent> queue;
+    private Thread flusher;
+    private volatile boolean running;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(new Flusher(), "audit-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("audit writer started: queueCapacity={}, flushSize={}, flushInterval={}ms",
+                queueCapacity, flushSize, flushInterval);
+    }
+
+    /**
+     * Stops the flusher and writes every queued row before the context
+     * closes.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // waits for the producers blocked on a full queue, the flusher is
+        // still taking rows off it
+        lock.writeLock().lock();
+        try {
+            if (flusher == null) {
+                return;
+            }
+            running = false;
+            flusher.join();
+            flusher = null;
+            List<AuditEvent> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            while (!remaining.isEmpty()) {
+                int size = Math.min(remaining.size(), flushSize);
+                List<AuditEvent> batch = remaining.subList(0, size);
+                flush(batch);
+                batch.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("audit writer stopped");
+    }
+
+    public void createTransaction(Transaction transaction) {
+        submit(new AuditEvent(AuditEvent.Kind.CREATE_TRANSACTION, copyOf(transaction), null));
+    }
+
+    public void updateTransaction(Transaction transaction) {
+        submit(new AuditEvent(AuditEvent.Kind.UPDATE_TRANSACTION, copyOf(transaction), null));
+    }
+
+    public void createMessage(Message message) {
+        submit(new AuditEvent(AuditEvent.Kind.CREATE_MESSAGE, null, copyOf(message)));
+    }
+
+    /**
+     * Queues the event, blocking while the queue is full. Falls back to a
+     * synchronous write when the flusher is not running, which is only
+     * after the queue has been drained.
+     */
+    protected void submit(AuditEvent event) {
+        lock.readLock().lock();
+        try {
+            if (running) {
+                putUninterruptibly(event);
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        write(event);
+    }
+
+    /**
+     * An interrupted producer still queues its row, writing it directly
+     * could overtake the rows it queued before.
+     */
+    private void putUninterruptibly(AuditEvent event) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(event);
+                    return;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes one batch in a single transaction. A transaction created and
+     * updated within the same batch is inserted once with its final status.
+     */
+    protected void flush(List<AuditEvent> batch) {
+        final Map<String, Transaction> transactionInserts = new LinkedHashMap<>();
+        final List<Transaction> transactionUpdates = new ArrayList<>();
+        final List<Message> messageInserts = new ArrayList<>();
+        for (AuditEvent event : batch) {
+            switch (event.kind) {
+                case CREATE_TRANSACTION:
+                    transactionInserts.put(event.transaction.getTransactionId(), event.transaction);
+                    break;
+                case UPDATE_TRANSACTION:
+                    if (transactionInserts.containsKey(event.transaction.getTransactionId())) {
+                        transactionInserts.put(event.transaction.getTransactionId(), event.transaction);
+                    } else {
+                        transactionUpdates.add(event.transaction);
+                    }
+                    break;
+                case CREATE_MESSAGE:
+                    messageInserts.add(event.message);
+                    break;
+            }
+        }
+
+        try {
+            transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    if (!transactionInserts.isEmpty()) {
+                        transactionDao.createBatch(new ArrayList<>(transactionInserts.values()));
+                    }
+                    if (!transactionUpdates.isEmpty()) {
+                        transactionDao.updateBatch(transactionUpdates);
+                    }
+                    if (!messageInserts.isEmpty()) {
+                        messageDao.createBatch(messageInserts);
+                    }
+                }
+            });
+            logger.debug("audit batch flushed: {} transaction inserts, {} transaction updates, {} messages",
+                    transactionInserts.size(), transactionUpdates.size(), messageInserts.size());
+        } catch (RuntimeException ex) {
+            logger.error("audit batch failed, writing " + batch.size() + " rows one by one", ex);
+            for (AuditEvent event : batch) {
+                try {
+                    write(event);
+                } catch (RuntimeException rowEx) {
+                    logger.error("audit row lost: " + event, rowEx);
+                }
+            }
+        }
+    }
+
+    /**
+     * Synchronous write of a single event in its own transaction.
+     */
+    protected void write(final AuditEvent event) {
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                switch (event.kind) {
+                    case CREATE_TRANSACTION:
+                        transactionDao.create(event.transaction);
+                        break;
+                    case UPDATE_TRANSACTION:
+                        transactionDao.update(event.transaction);
+                        break;
+                    case CREATE_MESSAGE:
+                        messageDao.create(event.message);
+                        break;
+                }
+            }
+        });
+    }
+
+    /**
+     * The aspects keep mutating the status after logging, so the queue
+     * holds snapshots.
+     */
+    private static Transaction copyOf(Transaction transaction) {
+        return new Transaction(transaction.getTransactionId(), transaction.getType(), transaction.getStatus());
+    }
+
+    private static Message copyOf(Message message) {
+        return new Message(message.getTransactionId(), message.getMessage(), message.getStatus());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public void setFlushSize(int flushSize) {
+        this.flushSize = flushSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Number of rows waiting for the flusher.
+     */
+    public int getQueueSize() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    protected class Flusher implements Runnable {
+
+        @Override
+        public void run() {
+            List<AuditEvent> batch = new ArrayList<>(flushSize);
+            while (running) {
+                try {
+                    AuditEvent first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.currentTimeMillis() + flushInterval;
+                    while (batch.size() < flushSize) {
+                        queue.drainTo(batch, flushSize - batch.size());
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (batch.size() >= flushSize || remaining <= 0) {
+                            break;
+                        }
+                        AuditEvent next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } catch (InterruptedException ex) {
+                    // only stop() ends the flusher, producers rely on it
+                    // while they are queueing
+                    logger.warn("audit writer interrupted, ignoring");
+                }
+                if (!batch.isEmpty()) {
+                    flush(Collections.unmodifiableList(batch));
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    protected static class AuditEvent {
+
+        enum Kind {
+            CREATE_TRANSACTION, UPDATE_TRANSACTION, CREATE_MESSAGE
+        }
+
+        final Kind kind;
+        final Transaction transaction;
+        final Message message;
+
+        AuditEvent(Kind kind, Transaction transaction, Message message) {
+            this.kind = kind;
+            this.transaction = transaction;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "AuditEvent{" + "kind=" + kind + ", transaction=" + transaction + ", message=" + message + '}';
+        }
+    }
+
+}
@@ -3,14 +3,12 @@ package org.springframework.boot.issues.gh1530.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.issues.gh1530.dao.MessageDao;
 import org.springframework.boot.issues.gh1530.model.Message;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
- * Message logger service.
+ * Message logger service. Rows are written by the {@link AuditWriter},
+ * either synchronously in a new transaction or batched in the background.
  * @author Pato Istvan <istvan.pato@vanio.hu>
  */
 @Component
@@ -19,12 +17,11 @@ public class MessageLoggerComponent {
     Logger logger = LoggerFactory.getLogger(MessageLoggerComponent.class);
 
     @Autowired
-    MessageDao messageDao;
+    AuditWriter auditWriter;
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void logMessage(Message message) {
         logger.info("message create: {}", message);
-        messageDao.create(message);
+        auditWriter.createMessage(message);
     }
 
 }
@@ -1,36 +1,180 @@
 package org.springframework.boot.issues.gh1530.service;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.issues.gh1530.dao.TransactionDao;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.issues.gh1530.model.Transaction;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
- * Transaction logger service.
+ * Transaction logger service. Rows are written by the {@link AuditWriter},
+ * either synchronously in a new transaction or batched in the background.
+ *
+ * With {@code audit.transaction.deferred=true} the start of a transaction is
+ * only kept in memory and a single row with the final status is inserted when
+ * it ends. Transactions still running after
+ * {@code audit.transaction.in-flight-threshold} milliseconds get an early
+ * row with their start status, which is then updated at the end. Once that
+ * row is written the transaction is no longer kept in memory, and at most
+ * {@code audit.transaction.max-in-flight} transactions are deferred at a
+ * time, the ones above it and the ones started after {@link #stop()} are
+ * written right away.
  * @author Pato Istvan <istvan.pato@vanio.hu>
  */
 @Component
+@ConfigurationProperties(prefix = "audit.transaction")
 public class TransactionLoggerComponent {
 
     Logger logger = LoggerFactory.getLogger(TransactionLoggerComponent.class);
 
     @Autowired
-    TransactionDao transactionDao;
+    AuditWriter auditWriter;
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void logTransaction(Transaction transaction) {
-        logger.info("transaction create: {}", transaction);
-        transactionDao.create(transaction);
+    /**
+     * Write a single row per transaction when it ends.
+     */
+    private boolean deferred = false;
+
+    /**
+     * Time in milliseconds after which a deferred transaction is written as
+     * in-flight.
+     */
+    private long inFlightThreshold = 5000;
+
+    /**
+     * Maximum number of deferred transactions kept in memory.
+     */
+    private int maxInFlight = 10000;
+
+    private final ConcurrentMap<String, Future<Void>> inFlight = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor inFlightScheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!deferred) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("audit-in-flight-");
+        threadFactory.setDaemon(true);
+        inFlightScheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        inFlightScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (inFlightScheduler != null) {
+            inFlightScheduler.shutdownNow();
+        }
+    }
+
+    public void logTransaction(final Transaction transaction) {
+        if (!deferred || inFlight.size() >= maxInFlight || inFlightScheduler.isShutdown()) {
+            logger.info("transaction create: {}", transaction);
+            auditWriter.createTransaction(transaction);
+            return;
+        }
+        logger.debug("transaction deferred: {}", transaction);
+        final String transactionId = transaction.getTransactionId();
+        final Transaction started = new Transaction(
+                transactionId, transaction.getType(), transaction.getStatus());
+        Future<Void> future;
+        try {
+            future = inFlightScheduler.schedule(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    logger.info("transaction in-flight create: {}", started);
+                    auditWriter.createTransaction(started);
+                    // the row exists, the end of the transaction is a plain update
+                    inFlight.remove(transactionId);
+                    return null;
+                }
+            }, inFlightThreshold, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            logger.info("transaction create: {}", transaction);
+            auditWriter.createTransaction(transaction);
+            return;
+        }
+        inFlight.put(transactionId, future);
+        if (future.isDone() && !inFlightRowFailed(future)) {
+            inFlight.remove(transactionId, future);
+        }
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void updateTransaction(Transaction transaction) {
+        Future<Void> future = deferred ? inFlight.remove(transaction.getTransactionId()) : null;
+        if (future != null && (future.cancel(false) || !inFlightRowWritten(future))) {
+            logger.info("transaction create: {}", transaction);
+            auditWriter.createTransaction(transaction);
+            return;
+        }
         logger.info("transaction update: {}", transaction);
-        transactionDao.update(transaction);
+        auditWriter.updateTransaction(transaction);
+    }
+
+    /**
+     * Waits for an in-flight write that has already started. An interrupted
+     * wait counts as not written, a duplicate row is better than a lost one.
+     */
+    private boolean inFlightRowWritten(Future<Void> future) {
+        try {
+            future.get();
+            return true;
+        } catch (ExecutionException ex) {
+            logger.error("transaction in-flight create failed", ex.getCause());
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Whether a finished in-flight write failed, its transaction is then
+     * created when it ends.
+     */
+    private boolean inFlightRowFailed(Future<Void> future) {
+        try {
+            future.get();
+            return false;
+        } catch (ExecutionException | InterruptedException ex) {
+            return true;
+        }
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    public void setDeferred(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    public long getInFlightThreshold() {
+        return inFlightThreshold;
+    }
+
+    public void setInFlightThreshold(long inFlightThreshold) {
+        this.inFlightThreshold = inFlightThreshold;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
     }
 
 }
@@ -4,6 +4,8 @@ create table log_transaction (
   tr_status varchar(25)
 );
 
+create index ix_log_transaction_tr_id on log_transaction (tr_id);
+
 create table log_message (
   m_tr_id varchar(36),
   m_message varchar(256),
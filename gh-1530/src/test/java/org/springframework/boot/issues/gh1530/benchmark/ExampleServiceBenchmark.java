@@ -0,0 +1,115 @@
+package org.springframework.boot.issues.gh1530.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.issues.gh1530.Application;
+import org.springframework.boot.issues.gh1530.dao.MessageDao;
+import org.springframework.boot.issues.gh1530.dao.MyModelDao;
+import org.springframework.boot.issues.gh1530.dao.TransactionDao;
+import org.springframework.boot.issues.gh1530.model.Message;
+import org.springframework.boot.issues.gh1530.model.Transaction;
+import org.springframework.boot.issues.gh1530.model.TransactionIds;
+import org.springframework.boot.issues.gh1530.service.ExampleService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Advised vs. unadvised ExampleService.execute. The unadvised service is a
+ * plain instance sharing the DAO of the application context, called in a
+ * transaction of the same transaction manager like the @Transactional proxy
+ * does. So the difference is the cost of the logger aspects and their audit
+ * writes, not of the transaction.
+ *
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=org.springframework.boot.issues.gh1530.benchmark.ExampleServiceBenchmark
+ * -Dexec.classpathScope=test
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExampleServiceBenchmark {
+
+    ConfigurableApplicationContext context;
+    ExampleService advisedService;
+    ExampleService unadvisedService;
+    TransactionTemplate transactionTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class).web(false).run();
+        advisedService = context.getBean(ExampleService.class);
+        unadvisedService = new ExampleService();
+        ReflectionTestUtils.setField(unadvisedService, "myModelDao", context.getBean(MyModelDao.class));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanUp() {
+        context.getBean(MyModelDao.class).deleteAll();
+        context.getBean(MessageDao.class).deleteAll();
+        context.getBean(TransactionDao.class).deleteAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String advised() {
+        return execute(advisedService);
+    }
+
+    @Benchmark
+    public String unadvised() {
+        return transactionTemplate.execute(new TransactionCallback<String>() {
+            @Override
+            public String doInTransaction(TransactionStatus status) {
+                return execute(unadvisedService);
+            }
+        });
+    }
+
+    private String execute(ExampleService service) {
+        String transactionId = TransactionIds.newTransactionId();
+        Transaction transaction = new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_RUNNING);
+        Message requestMessage = new Message(
+                transactionId,
+                "my_input",
+                Message.STATUS_OK);
+        return service.execute(transaction, requestMessage, "my_input");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExampleServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,231 @@
+package org.springframework.boot.issues.gh1530.dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.issues.gh1530.Application;
+import org.springframework.boot.issues.gh1530.model.Message;
+import org.springframework.boot.issues.gh1530.model.Transaction;
+import org.springframework.boot.issues.gh1530.model.TransactionIds;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Time-bucketed log_transaction and log_message tables test.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = Application.class)
+@IntegrationTest
+public class AuditTablePartitionerIT {
+
+    @Autowired
+    AuditTablePartitioner partitioner;
+
+    @Autowired
+    TransactionDao transactionDao;
+
+    @Autowired
+    MessageDao messageDao;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Before
+    public void setUp() {
+        partitioner.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        messageDao.deleteAll();
+        transactionDao.deleteAll();
+        partitioner.setRetention(-2);
+        partitioner.dropExpiredBuckets();
+        partitioner.setRetention(30);
+        partitioner.setEnabled(false);
+    }
+
+    /**
+     * Rows go to the bucket of the timestamp in their id and are found there.
+     */
+    @Test
+    public void testBucketFromTransactionId() {
+        System.out.println("partitioner testBucketFromTransactionId");
+
+        String transactionId = TransactionIds.newTransactionId();
+        assertTrue(TransactionIds.timestampOf(transactionId) > 0);
+        Transaction tr = new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_RUNNING);
+        transactionDao.create(tr);
+        messageDao.create(new Message(transactionId, "my message", Message.STATUS_OK));
+
+        List<String> tables = partitioner.tablesFor(TransactionDao.TABLE, transactionId);
+        assertTrue(tables.size() == 1);
+        assertFalse(TransactionDao.TABLE.equals(tables.get(0)));
+
+        tr.setStatus(Transaction.STATUS_OK);
+        transactionDao.update(tr);
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transactionId).getStatus());
+        assertTrue(messageDao.readAll().size() == 1);
+    }
+
+    /**
+     * Ids without a timestamp are searched in every table.
+     */
+    @Test
+    public void testPlainUuid() {
+        System.out.println("partitioner testPlainUuid");
+
+        String transactionId = UUID.randomUUID().toString();
+        assertEquals(-1, TransactionIds.timestampOf(transactionId));
+        Transaction tr = new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_RUNNING);
+        transactionDao.create(tr);
+        tr.setStatus(Transaction.STATUS_OK);
+        transactionDao.update(tr);
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transactionId).getStatus());
+    }
+
+    /**
+     * Rows of a transaction older than the retention period go to the current
+     * bucket instead of creating the expired one again.
+     */
+    @Test
+    public void testExpiredTransactionId() {
+        System.out.println("partitioner testExpiredTransactionId");
+
+        String transactionId = transactionIdOf(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(40));
+        String expired = partitioner.bucketTable(TransactionDao.TABLE, TransactionIds.timestampOf(transactionId));
+        Transaction tr = new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_RUNNING);
+        transactionDao.create(tr);
+
+        assertFalse(partitioner.readTables(TransactionDao.TABLE).contains(expired));
+        assertEquals(Transaction.STATUS_RUNNING, transactionDao.read(transactionId).getStatus());
+    }
+
+    /**
+     * A bucket created by another node in the meantime is used as it is.
+     */
+    @Test
+    public void testBucketCreatedElsewhere() {
+        System.out.println("partitioner testBucketCreatedElsewhere");
+
+        String transactionId = transactionIdOf(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2));
+        String table = partitioner.bucketTable(TransactionDao.TABLE, TransactionIds.timestampOf(transactionId));
+        assertFalse(partitioner.readTables(TransactionDao.TABLE).contains(table));
+        new JdbcTemplate(dataSource).execute(
+                "create table " + table + " as select * from " + TransactionDao.TABLE + " with no data");
+
+        transactionDao.create(new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_OK));
+        assertTrue(partitioner.readTables(TransactionDao.TABLE).contains(table));
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transactionId).getStatus());
+    }
+
+    /**
+     * Rows another node wrote into a bucket it created after this node loaded
+     * its buckets are found.
+     */
+    @Test
+    public void testReadBucketCreatedElsewhere() {
+        System.out.println("partitioner testReadBucketCreatedElsewhere");
+
+        String transactionId = transactionIdOf(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3));
+        String table = partitioner.bucketTable(TransactionDao.TABLE, TransactionIds.timestampOf(transactionId));
+        assertFalse(partitioner.readTables(TransactionDao.TABLE).contains(table));
+        JdbcTemplate otherNode = new JdbcTemplate(dataSource);
+        otherNode.execute("create table " + table + " as select * from " + TransactionDao.TABLE + " with no data");
+        otherNode.update("insert into " + table + " (" + TransactionDao.SELECTED_FIELDS + ") values (?,?,?)",
+                transactionId, Transaction.TYPE_MY_TRANSACTION, Transaction.STATUS_RUNNING);
+
+        assertEquals(Collections.singletonList(table), partitioner.tablesFor(TransactionDao.TABLE, transactionId));
+        assertEquals(Transaction.STATUS_RUNNING, transactionDao.read(transactionId).getStatus());
+        transactionDao.update(new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_OK));
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transactionId).getStatus());
+        assertTrue(partitioner.readTables(TransactionDao.TABLE).contains(table));
+    }
+
+    /**
+     * Expired buckets are dropped, the base table is kept.
+     */
+    @Test
+    public void testDropExpiredBuckets() {
+        System.out.println("partitioner testDropExpiredBuckets");
+
+        transactionDao.create(new Transaction(
+                TransactionIds.newTransactionId(),
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_OK));
+        assertTrue(partitioner.readTables(TransactionDao.TABLE).size() == 2);
+
+        // one bucket more than the retention is kept
+        partitioner.setRetention(-1);
+        partitioner.dropExpiredBuckets();
+        assertTrue(partitioner.readTables(TransactionDao.TABLE).size() == 2);
+
+        partitioner.setRetention(-2);
+        partitioner.dropExpiredBuckets();
+
+        List<String> tables = partitioner.readTables(TransactionDao.TABLE);
+        assertTrue(tables.size() == 1);
+        assertEquals(TransactionDao.TABLE, tables.get(0));
+        assertTrue(transactionDao.readAll().isEmpty());
+    }
+
+    /**
+     * A bucket another node already dropped does not stop the retention job.
+     */
+    @Test
+    public void testBucketDroppedElsewhere() {
+        System.out.println("partitioner testBucketDroppedElsewhere");
+
+        String transactionId = transactionIdOf(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2));
+        String table = partitioner.bucketTable(TransactionDao.TABLE, TransactionIds.timestampOf(transactionId));
+        transactionDao.create(new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_OK));
+        transactionDao.create(new Transaction(
+                TransactionIds.newTransactionId(),
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_OK));
+        assertTrue(partitioner.readTables(TransactionDao.TABLE).size() == 3);
+        new JdbcTemplate(dataSource).execute("drop table " + table);
+
+        partitioner.setRetention(-2);
+        partitioner.dropExpiredBuckets();
+        partitioner.setRetention(30);
+
+        List<String> tables = partitioner.readTables(TransactionDao.TABLE);
+        assertTrue(tables.size() == 1);
+        assertEquals(TransactionDao.TABLE, tables.get(0));
+    }
+
+    private static String transactionIdOf(long timestamp) {
+        return String.format("%012x", timestamp) + UUID.randomUUID().toString().substring(13);
+    }
+
+}
@@ -0,0 +1,195 @@
+package org.springframework.boot.issues.gh1530.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.issues.gh1530.Application;
+import org.springframework.boot.issues.gh1530.model.Message;
+import org.springframework.boot.issues.gh1530.model.Transaction;
+import org.springframework.boot.issues.gh1530.model.TransactionIds;
+import org.springframework.boot.issues.gh1530.service.AuditWriter;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Asynchronous AuditWriter test.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = Application.class)
+@IntegrationTest
+public class AuditWriterIT {
+
+    @Autowired
+    TransactionDao transactionDao;
+
+    @Autowired
+    MessageDao messageDao;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    RecordingAuditWriter auditWriter;
+
+    @Before
+    public void setUp() {
+        auditWriter = new RecordingAuditWriter();
+        ReflectionTestUtils.setField(auditWriter, "transactionDao", transactionDao);
+        ReflectionTestUtils.setField(auditWriter, "messageDao", messageDao);
+        ReflectionTestUtils.setField(auditWriter, "transactionManager", transactionManager);
+        auditWriter.setEnabled(true);
+        auditWriter.setFlushSize(2);
+        auditWriter.setFlushInterval(50);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        auditWriter.stop();
+        messageDao.deleteAll();
+        transactionDao.deleteAll();
+    }
+
+    /**
+     * Queued rows are written with their state at the time they were logged,
+     * and everything still queued is written on shutdown.
+     */
+    @Test
+    public void testDrainOnStop() throws InterruptedException {
+        System.out.println("auditWriter testDrainOnStop");
+
+        String transactionId = TransactionIds.newTransactionId();
+        Transaction transaction = new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_RUNNING);
+        Message message = new Message(
+                transactionId,
+                "my message",
+                Message.STATUS_OK);
+
+        auditWriter.start();
+        auditWriter.createTransaction(transaction);
+        auditWriter.createMessage(message);
+        message.setStatus(Message.STATUS_ERROR);
+        auditWriter.createMessage(message);
+        transaction.setStatus(Transaction.STATUS_OK);
+        auditWriter.updateTransaction(transaction);
+
+        auditWriter.stop();
+        assertEquals(0, auditWriter.getQueueSize());
+
+        Transaction newTr = transactionDao.read(transactionId);
+        assertEquals(Transaction.STATUS_OK, newTr.getStatus());
+
+        List<Message> messageList = messageDao.readAll();
+        assertTrue(messageList.size() == 2);
+        assertEquals(Message.STATUS_OK, messageList.get(0).getStatus());
+        assertEquals(Message.STATUS_ERROR, messageList.get(1).getStatus());
+    }
+
+    /**
+     * A full batch is written as soon as it has flushSize rows, without
+     * waiting for the flush interval.
+     */
+    @Test
+    public void testFlushBySize() throws InterruptedException {
+        System.out.println("auditWriter testFlushBySize");
+
+        auditWriter.setFlushSize(3);
+        auditWriter.setFlushInterval(10000);
+        auditWriter.start();
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 6; i++) {
+            auditWriter.createMessage(new Message(TransactionIds.newTransactionId(), "message " + i, Message.STATUS_OK));
+        }
+        waitForRows(6, 5000);
+
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(Collections.nCopies(2, 3), auditWriter.getBatchSizes());
+    }
+
+    /**
+     * A batch that doesn't fill up is written once the flush interval is
+     * over, while the writer is still running.
+     */
+    @Test
+    public void testFlushByInterval() throws InterruptedException {
+        System.out.println("auditWriter testFlushByInterval");
+
+        auditWriter.setFlushSize(100);
+        auditWriter.setFlushInterval(200);
+        auditWriter.start();
+
+        long start = System.currentTimeMillis();
+        auditWriter.createMessage(new Message(TransactionIds.newTransactionId(), "first", Message.STATUS_OK));
+        auditWriter.createMessage(new Message(TransactionIds.newTransactionId(), "second", Message.STATUS_OK));
+        waitForRows(2, 5000);
+
+        assertTrue(System.currentTimeMillis() - start >= 200);
+        assertEquals(Collections.singletonList(2), auditWriter.getBatchSizes());
+    }
+
+    /**
+     * Rows logged after shutdown are written synchronously, after the rows
+     * queued before it.
+     */
+    @Test
+    public void testSubmitAfterStop() throws InterruptedException {
+        System.out.println("auditWriter testSubmitAfterStop");
+
+        auditWriter.setFlushInterval(10000);
+        auditWriter.start();
+
+        String transactionId = TransactionIds.newTransactionId();
+        Transaction transaction = new Transaction(
+                transactionId,
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_RUNNING);
+        auditWriter.createTransaction(transaction);
+        auditWriter.stop();
+
+        transaction.setStatus(Transaction.STATUS_OK);
+        auditWriter.updateTransaction(transaction);
+
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transactionId).getStatus());
+    }
+
+    private void waitForRows(int count, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (messageDao.readAll().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, messageDao.readAll().size());
+    }
+
+    /**
+     * Keeps the size of every batch written by the flusher.
+     */
+    static class RecordingAuditWriter extends AuditWriter {
+
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        protected void flush(List<AuditEvent> batch) {
+            batchSizes.add(batch.size());
+            super.flush(batch);
+        }
+
+        List<Integer> getBatchSizes() {
+            synchronized (batchSizes) {
+                return new ArrayList<>(batchSizes);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.springframework.boot.issues.gh1530.dao;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import org.junit.After;
@@ -94,4 +95,30 @@ public class MessageDaoIT {
         messageDao.deleteAll();
     }
 
+    /**
+     * Test of streaming readAll method, of class MessageDao.
+     */
+    @Test
+    public void testReadAllStreaming() {
+        System.out.println("message testReadAllStreaming");
+        messageDao.deleteAll();
+
+        String transactionId = UUID.randomUUID().toString();
+        messageDao.create(new Message(transactionId, "my message", Message.STATUS_OK));
+        messageDao.create(new Message(transactionId, "my message", Message.STATUS_ERROR));
+        final List<Message> newMessageList = new ArrayList<>();
+        messageDao.readAll(new RowCallback<Message>() {
+            @Override
+            public void processRow(Message row) {
+                newMessageList.add(row);
+            }
+        });
+        assertTrue(newMessageList.size() == 2);
+        for (Message m : newMessageList) {
+            assertEquals(transactionId, m.getTransactionId());
+        }
+
+        messageDao.deleteAll();
+    }
+
 }
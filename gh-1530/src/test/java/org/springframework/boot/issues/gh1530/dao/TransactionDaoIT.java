@@ -1,5 +1,8 @@
 package org.springframework.boot.issues.gh1530.dao;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -87,4 +90,73 @@ public class TransactionDaoIT {
         transactionDao.deleteAll();
     }
 
+    /**
+     * Test of readAllPaged method, of class TransactionDao.
+     */
+    @Test
+    public void testReadAllPaged() {
+        System.out.println("transaction testReadAllPaged");
+        transactionDao.deleteAll();
+
+        for (int i = 0; i < 5; i++) {
+            transactionDao.create(new Transaction(
+                    UUID.randomUUID().toString(),
+                    Transaction.TYPE_MY_TRANSACTION,
+                    Transaction.STATUS_OK));
+        }
+        final List<String> transactionIds = new ArrayList<>();
+        transactionDao.readAllPaged(2, new RowCallback<Transaction>() {
+            @Override
+            public void processRow(Transaction row) {
+                transactionIds.add(row.getTransactionId());
+            }
+        });
+        assertTrue(transactionIds.size() == 5);
+        for (int i = 1; i < transactionIds.size(); i++) {
+            assertTrue(transactionIds.get(i - 1).compareTo(transactionIds.get(i)) < 0);
+        }
+
+        transactionDao.deleteAll();
+    }
+
+    /**
+     * Rows with the same tr_id are neither skipped nor repeated at page
+     * boundaries.
+     */
+    @Test
+    public void testReadPageDuplicateIds() {
+        System.out.println("transaction testReadPageDuplicateIds");
+        transactionDao.deleteAll();
+
+        String duplicateId = "00000000-0000-0000-0000-000000000000";
+        for (int i = 0; i < 3; i++) {
+            transactionDao.create(new Transaction(
+                    duplicateId,
+                    Transaction.TYPE_MY_TRANSACTION,
+                    Transaction.STATUS_OK));
+        }
+        for (int i = 0; i < 3; i++) {
+            transactionDao.create(new Transaction(
+                    UUID.randomUUID().toString(),
+                    Transaction.TYPE_MY_TRANSACTION,
+                    Transaction.STATUS_OK));
+        }
+        final List<String> transactionIds = new ArrayList<>();
+        transactionDao.readAllPaged(2, new RowCallback<Transaction>() {
+            @Override
+            public void processRow(Transaction row) {
+                transactionIds.add(row.getTransactionId());
+            }
+        });
+        assertTrue(transactionIds.size() == 6);
+        assertEquals(3, Collections.frequency(transactionIds, duplicateId));
+
+        List<Transaction> page = transactionDao.readPage(null, 2);
+        assertTrue(page.size() == 3);
+        assertEquals(duplicateId, page.get(2).getTransactionId());
+        assertTrue(transactionDao.readPage(duplicateId, 2).size() == 2);
+
+        transactionDao.deleteAll();
+    }
+
 }
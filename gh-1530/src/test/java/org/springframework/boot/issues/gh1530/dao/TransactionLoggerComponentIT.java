@@ -0,0 +1,155 @@
+package org.springframework.boot.issues.gh1530.dao;
+
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.issues.gh1530.Application;
+import org.springframework.boot.issues.gh1530.model.Transaction;
+import org.springframework.boot.issues.gh1530.model.TransactionIds;
+import org.springframework.boot.issues.gh1530.service.AuditWriter;
+import org.springframework.boot.issues.gh1530.service.TransactionLoggerComponent;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Deferred TransactionLoggerComponent test.
+ * @author Pato Istvan <istvan.pato@vanio.hu>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = Application.class)
+@IntegrationTest
+public class TransactionLoggerComponentIT {
+
+    @Autowired
+    TransactionDao transactionDao;
+
+    @Autowired
+    AuditWriter auditWriter;
+
+    TransactionLoggerComponent transactionLoggerComponent;
+
+    @Before
+    public void setUp() {
+        transactionLoggerComponent = new TransactionLoggerComponent();
+        ReflectionTestUtils.setField(transactionLoggerComponent, "auditWriter", auditWriter);
+        transactionLoggerComponent.setDeferred(true);
+        transactionLoggerComponent.setInFlightThreshold(100);
+        transactionLoggerComponent.start();
+    }
+
+    @After
+    public void tearDown() {
+        transactionLoggerComponent.stop();
+        transactionDao.deleteAll();
+    }
+
+    /**
+     * A short transaction is written once, with its final status.
+     */
+    @Test
+    public void testShortTransaction() {
+        System.out.println("transactionLogger testShortTransaction");
+
+        Transaction transaction = newTransaction();
+        transactionLoggerComponent.logTransaction(transaction);
+        assertTrue(transactionDao.readAll().isEmpty());
+
+        transaction.setStatus(Transaction.STATUS_OK);
+        transactionLoggerComponent.updateTransaction(transaction);
+
+        assertTrue(transactionDao.readAll().size() == 1);
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transaction.getTransactionId()).getStatus());
+    }
+
+    /**
+     * A long transaction is visible as in-flight before it ends.
+     */
+    @Test
+    public void testLongTransaction() throws InterruptedException {
+        System.out.println("transactionLogger testLongTransaction");
+
+        Transaction transaction = newTransaction();
+        transactionLoggerComponent.logTransaction(transaction);
+        Thread.sleep(500);
+        assertEquals(Transaction.STATUS_RUNNING, transactionDao.read(transaction.getTransactionId()).getStatus());
+
+        transaction.setStatus(Transaction.STATUS_OK);
+        transactionLoggerComponent.updateTransaction(transaction);
+
+        assertTrue(transactionDao.readAll().size() == 1);
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transaction.getTransactionId()).getStatus());
+    }
+
+    /**
+     * An in-flight transaction is no longer kept once its row is written.
+     */
+    @Test
+    public void testInFlightForgotten() throws InterruptedException {
+        System.out.println("transactionLogger testInFlightForgotten");
+
+        Transaction transaction = newTransaction();
+        transactionLoggerComponent.logTransaction(transaction);
+        assertEquals(1, inFlight().size());
+        Thread.sleep(500);
+        assertTrue(inFlight().isEmpty());
+    }
+
+    /**
+     * Transactions above the limit are written right away.
+     */
+    @Test
+    public void testMaxInFlight() {
+        System.out.println("transactionLogger testMaxInFlight");
+
+        transactionLoggerComponent.setInFlightThreshold(60000);
+        transactionLoggerComponent.setMaxInFlight(1);
+        Transaction first = newTransaction();
+        transactionLoggerComponent.logTransaction(first);
+        Transaction second = newTransaction();
+        transactionLoggerComponent.logTransaction(second);
+        assertTrue(transactionDao.readAll().size() == 1);
+        assertEquals(Transaction.STATUS_RUNNING, transactionDao.read(second.getTransactionId()).getStatus());
+
+        second.setStatus(Transaction.STATUS_OK);
+        transactionLoggerComponent.updateTransaction(second);
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(second.getTransactionId()).getStatus());
+    }
+
+    /**
+     * Transactions started after the component is stopped are written right
+     * away instead of failing the business call.
+     */
+    @Test
+    public void testAfterStop() {
+        System.out.println("transactionLogger testAfterStop");
+
+        transactionLoggerComponent.stop();
+        Transaction transaction = newTransaction();
+        transactionLoggerComponent.logTransaction(transaction);
+        assertEquals(Transaction.STATUS_RUNNING, transactionDao.read(transaction.getTransactionId()).getStatus());
+
+        transaction.setStatus(Transaction.STATUS_OK);
+        transactionLoggerComponent.updateTransaction(transaction);
+        assertTrue(transactionDao.readAll().size() == 1);
+        assertEquals(Transaction.STATUS_OK, transactionDao.read(transaction.getTransactionId()).getStatus());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> inFlight() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(transactionLoggerComponent, "inFlight");
+    }
+
+    private Transaction newTransaction() {
+        return new Transaction(
+                TransactionIds.newTransactionId(),
+                Transaction.TYPE_MY_TRANSACTION,
+                Transaction.STATUS_RUNNING);
+    }
+
+}
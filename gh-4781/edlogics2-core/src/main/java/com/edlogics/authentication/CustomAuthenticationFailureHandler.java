@@ -0,0 +1,49 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.authentication;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redirects failed logins back to the login page, except for logins that were turned away because password verification
+ * is saturated. Those get a 503 with a Retry-After header, so clients back off instead of counting it as a bad password.
+ *
+ * @author jlanpher
+ */
+@Component("customAuthenticationFailureHandler")
+public class CustomAuthenticationFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+	@Value("${app.security.password-verification.retry-after-seconds:1}")
+	private int retryAfterSeconds;
+
+	public CustomAuthenticationFailureHandler() {
+		super( "/login?error" );
+	}
+
+	@Override
+	public void onAuthenticationFailure( HttpServletRequest request, HttpServletResponse response, AuthenticationException exception )
+			throws IOException, ServletException {
+		if ( exception instanceof LoginThrottledException ) {
+			response.setHeader( HttpHeaders.RETRY_AFTER, String.valueOf( retryAfterSeconds ) );
+			response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE, exception.getMessage() );
+			return;
+		}
+		super.onAuthenticationFailure( request, response, exception );
+	}
+}
@@ -54,6 +54,15 @@ public class CustomAuthenticationProviderImpl implements CustomAuthenticationPro
 	@Resource(name = "defaultPostAuthenticationChecks")
 	private CustomUserDetailsChecker postAuthenticationChecks;
 
+	@Resource
+	private UserDetailsCache userDetailsCache;
+
+	@Resource
+	private LoginAttemptTracker loginAttemptTracker;
+
+	@Resource
+	private PasswordVerifier passwordVerifier;
+
 	public CustomAuthenticationProviderImpl() {
 		super();
 	}
@@ -97,15 +106,15 @@ public class CustomAuthenticationProviderImpl implements CustomAuthenticationPro
 	 * @throws AuthenticationException
 	 */
 	protected void additionalAuthenticationChecks( UserDetails userDetails, Authentication authentication, User user ) throws AuthenticationException {
-		if ( !this.userService.doPasswordsMatch( (String) authentication.getCredentials(), userDetails.getPassword() ) ) {
-			user.updateLoginAttempts();
-
-			userService.saveUser( user );
+		/* The password is verified outside of any transaction, the wait for the verifier must not hold a pooled connection. */
+		if ( !this.passwordVerifier.matches( (String) authentication.getCredentials(), userDetails.getPassword() ) ) {
+			/* Failures are counted in memory, only the resulting lock is written to the user table. */
+			int loginAttempts = this.loginAttemptTracker.recordFailure( user.getEmail() );
 
 			/* As apart of capturing the number of login attempts we need to reverify if the user(s) account has been locked. */
 			this.preAuthenticationChecks.check( user );
 
-			Object[] params = new Object[] { user.getLoginAttempts(), User.MAX_LOGIN_ATTEMPTS, ( User.MAX_LOGIN_ATTEMPTS - user.getLoginAttempts() ) };
+			Object[] params = new Object[] { loginAttempts, User.MAX_LOGIN_ATTEMPTS, ( User.MAX_LOGIN_ATTEMPTS - loginAttempts ) };
 
 			throw new AuthenticationCredentialsNotFoundException(
 					this.messages.getMessage(
@@ -113,8 +122,22 @@ public class CustomAuthenticationProviderImpl implements CustomAuthenticationPro
 							params,
 							LocaleContextHolder.getLocale() ) );
 		}
-		user.resetLoginAttempts();
-		userService.saveUser( user );
+		this.loginAttemptTracker.recordSuccess( user.getEmail() );
+
+		/* Only write when something changed, the save also creates an audit revision of the user. */
+		boolean changed = false;
+		if ( user.getLoginAttempts() != 0 || !user.isAccountNonLocked() ) {
+			user.resetLoginAttempts();
+			changed = true;
+		}
+		if ( this.passwordVerifier.needsRehash( user.getPassword() ) ) {
+			/* Hashed before the save, which is the only part that needs a transaction. */
+			user.setPassword( this.passwordVerifier.encode( (String) authentication.getCredentials() ) );
+			changed = true;
+		}
+		if ( changed ) {
+			userService.saveUser( user );
+		}
 	}
 
 	/**
@@ -203,12 +226,18 @@ public class CustomAuthenticationProviderImpl implements CustomAuthenticationPro
 
 	@Override
 	public UserDetails loadUserByUsername( String emailAddress ) throws UsernameNotFoundException {
+		UserDetails userDetails = this.userDetailsCache.get( emailAddress );
+		if ( userDetails != null ) {
+			return userDetails;
+		}
 		User user = this.userService.getUserByEmail( emailAddress );
 		if ( user == null ) {
 			throw new AuthenticationCredentialsNotFoundException(
 					this.messages.getMessage( "account.notfound.exception", null, LocaleContextHolder.getLocale() ) );
 		}
-		return createUserDetails( user );
+		userDetails = createUserDetails( user );
+		this.userDetailsCache.put( emailAddress, userDetails );
+		return userDetails;
 	}
 
 	@Override
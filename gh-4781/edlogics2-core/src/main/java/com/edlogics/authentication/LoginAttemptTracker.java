@@ -0,0 +1,169 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.authentication;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.edlogics.users.domain.User;
+import com.edlogics.users.service.UserService;
+
+/**
+ * Counts failed logins in memory instead of saving the audited {@link User} on every failure.
+ * <p/>
+ * Failures are kept per lower cased email in a ring of the last {@link User#MAX_LOGIN_ATTEMPTS} failure times, so the count
+ * is the number of failures inside a sliding window. Once the count reaches the maximum the account is locked here right
+ * away, and the lock (and only the lock) is written to the user table by {@link #flush()}. After that the persisted
+ * {@link User#isAccountNonLocked()} flag is authoritative again, so unlocking an account works as before.
+ *
+ * @author jlanpher
+ */
+@Component
+@ConfigurationProperties("app.security.login-attempts")
+public class LoginAttemptTracker {
+
+	protected Logger logger = LoggerFactory.getLogger( getClass() );
+
+	@Resource(name = "userService")
+	private UserService userService;
+
+	/**
+	 * Failures older than this don't count against the account
+	 */
+	private long windowSeconds = 900;
+
+	private final ConcurrentMap<String, Attempts> attempts = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Integer> pendingLocks = new ConcurrentHashMap<>();
+
+	/**
+	 * Records a failed login
+	 *
+	 * @param email
+	 * @return the number of failures inside the window, including this one
+	 */
+	public int recordFailure( String email ) {
+		long now = System.currentTimeMillis();
+		String key = key( email );
+		int count = attempts.computeIfAbsent( key, k -> new Attempts( User.MAX_LOGIN_ATTEMPTS ) ).add( now, windowStart( now ) );
+		if ( count >= User.MAX_LOGIN_ATTEMPTS ) {
+			pendingLocks.put( key, count );
+		}
+		return count;
+	}
+
+	/**
+	 * Forgets the failures of a user that logged in successfully
+	 *
+	 * @param email
+	 */
+	public void recordSuccess( String email ) {
+		attempts.remove( key( email ) );
+	}
+
+	/**
+	 * @param email
+	 * @return true if the failures inside the window reached the maximum
+	 */
+	public boolean isLocked( String email ) {
+		if ( email == null ) {
+			return false;
+		}
+		Attempts userAttempts = attempts.get( key( email ) );
+		return userAttempts != null && userAttempts.count( windowStart( System.currentTimeMillis() ) ) >= User.MAX_LOGIN_ATTEMPTS;
+	}
+
+	/**
+	 * Writes the pending locks to the user table and drops expired counters.
+	 */
+	@Scheduled(fixedDelayString = "${app.security.login-attempts.flush-interval:5000}")
+	public void flush() {
+		for ( Map.Entry<String, Integer> lock : pendingLocks.entrySet() ) {
+			String email = lock.getKey();
+			try {
+				userService.lockUser( email, lock.getValue() );
+				pendingLocks.remove( email, lock.getValue() );
+				attempts.remove( email );
+			} catch ( RuntimeException e ) {
+				logger.error( "Could not persist the lock of " + email + ", will retry", e );
+			}
+		}
+
+		long windowStart = windowStart( System.currentTimeMillis() );
+		for ( Map.Entry<String, Attempts> entry : attempts.entrySet() ) {
+			if ( entry.getValue().count( windowStart ) == 0 ) {
+				attempts.remove( entry.getKey(), entry.getValue() );
+			}
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		flush();
+	}
+
+	private long windowStart( long now ) {
+		return now - TimeUnit.SECONDS.toMillis( windowSeconds );
+	}
+
+	private String key( String email ) {
+		return email.toLowerCase( Locale.ENGLISH );
+	}
+
+	public long getWindowSeconds() {
+		return windowSeconds;
+	}
+
+	public void setWindowSeconds( long windowSeconds ) {
+		this.windowSeconds = windowSeconds;
+	}
+
+	/**
+	 * Ring of the latest failure times of one user
+	 */
+	private static class Attempts {
+
+		private final AtomicLongArray failures;
+
+		private final AtomicInteger next = new AtomicInteger();
+
+		Attempts( int size ) {
+			this.failures = new AtomicLongArray( size );
+		}
+
+		int add( long now, long windowStart ) {
+			failures.set( Math.floorMod( next.getAndIncrement(), failures.length() ), now );
+			return count( windowStart );
+		}
+
+		int count( long windowStart ) {
+			int count = 0;
+			for ( int i = 0; i < failures.length(); i++ ) {
+				if ( failures.get( i ) > windowStart ) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.authentication;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when a login can't be verified right now because the password verification is saturated.
+ * {@link CustomAuthenticationFailureHandler} turns it into a 503 instead of a failed login.
+ *
+ * @author jlanpher
+ */
+public class LoginThrottledException extends AuthenticationServiceException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 */
+	public LoginThrottledException( String message ) {
+		super( message );
+	}
+
+	/**
+	 * @param message
+	 * @param cause
+	 */
+	public LoginThrottledException( String message, Throwable cause ) {
+		super( message, cause );
+	}
+}
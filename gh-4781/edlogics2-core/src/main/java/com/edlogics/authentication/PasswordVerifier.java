@@ -0,0 +1,203 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.authentication;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the BCrypt work of a login on its own small pool instead of the request thread, so a login burst can only use as many
+ * cores as the pool has threads. The queue in front of the pool is bounded; when it's full, or a verification waited longer
+ * than the timeout, a {@link LoginThrottledException} is thrown instead.
+ *
+ * @author jlanpher
+ */
+@Component
+@ConfigurationProperties("app.security.password-verification")
+public class PasswordVerifier {
+
+	private static final Pattern BCRYPT_COST = Pattern.compile( "\\A\\$2[aby]?\\$(\\d\\d)\\$" );
+
+	@Resource(name = "passwordEncoder")
+	private PasswordEncoder passwordEncoder;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private int queueCapacity = 64;
+
+	private long timeoutMillis = 5000;
+
+	/**
+	 * The BCrypt cost passwords should be hashed with, must match the passwordEncoder bean
+	 */
+	private int strength = 10;
+
+	private ThreadPoolExecutor executor;
+
+	private final LongAdder hashCount = new LongAdder();
+
+	private final LongAdder hashNanos = new LongAdder();
+
+	private final AtomicLong maxHashNanos = new AtomicLong();
+
+	private final LongAdder rejectedCount = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		executor = new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>( queueCapacity ),
+				new CustomizableThreadFactory( "password-verifier-" ),
+				new ThreadPoolExecutor.AbortPolicy() );
+	}
+
+	@PreDestroy
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @see PasswordEncoder#matches(CharSequence, String)
+	 */
+	public boolean matches( CharSequence rawPassword, String encodedPassword ) {
+		return call( () -> passwordEncoder.matches( rawPassword, encodedPassword ) );
+	}
+
+	/**
+	 * @see PasswordEncoder#encode(CharSequence)
+	 */
+	public String encode( CharSequence rawPassword ) {
+		return call( () -> passwordEncoder.encode( rawPassword ) );
+	}
+
+	/**
+	 * @param encodedPassword
+	 * @return true if the password was hashed with a different BCrypt cost than the configured one
+	 */
+	public boolean needsRehash( String encodedPassword ) {
+		if ( encodedPassword == null ) {
+			return false;
+		}
+		Matcher matcher = BCRYPT_COST.matcher( encodedPassword );
+		return matcher.find() && Integer.parseInt( matcher.group( 1 ) ) != strength;
+	}
+
+	private <T> T call( Callable<T> task ) {
+		Future<T> future;
+		try {
+			future = executor.submit( () -> {
+				long start = System.nanoTime();
+				try {
+					return task.call();
+				} finally {
+					long elapsed = System.nanoTime() - start;
+					hashCount.increment();
+					hashNanos.add( elapsed );
+					maxHashNanos.accumulateAndGet( elapsed, Math::max );
+				}
+			} );
+		} catch ( RejectedExecutionException e ) {
+			rejectedCount.increment();
+			throw new LoginThrottledException( "Too many logins in progress, please try again", e );
+		}
+
+		try {
+			return future.get( timeoutMillis, TimeUnit.MILLISECONDS );
+		} catch ( TimeoutException e ) {
+			future.cancel( true );
+			rejectedCount.increment();
+			throw new LoginThrottledException( "Too many logins in progress, please try again", e );
+		} catch ( InterruptedException e ) {
+			future.cancel( true );
+			Thread.currentThread().interrupt();
+			throw new AuthenticationServiceException( "Interrupted while verifying the password", e );
+		} catch ( ExecutionException e ) {
+			if ( e.getCause() instanceof RuntimeException ) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new AuthenticationServiceException( "Could not verify the password", e.getCause() );
+		}
+	}
+
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	public long getHashCount() {
+		return hashCount.sum();
+	}
+
+	public double getAverageHashMillis() {
+		long count = hashCount.sum();
+		return count == 0 ? 0 : hashNanos.sum() / 1e6 / count;
+	}
+
+	public double getMaxHashMillis() {
+		return maxHashNanos.get() / 1e6;
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads( int threads ) {
+		this.threads = threads;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity( int queueCapacity ) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public void setTimeoutMillis( long timeoutMillis ) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public int getStrength() {
+		return strength;
+	}
+
+	public void setStrength( int strength ) {
+		this.strength = strength;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.authentication;
+
+import javax.annotation.Resource;
+
+import org.springframework.stereotype.Component;
+
+import com.edlogics.authentication.repository.RoleRepository;
+import com.edlogics.common.cache.CacheWarmer;
+
+/**
+ * Loads every role through {@link RoleRepository#findByRole(GrantedAuthorityConstants)}, which fills both the query cache and
+ * the Role entity region used on every login.
+ *
+ * @author jlanpher
+ */
+@Component
+public class RoleCacheWarmer implements CacheWarmer {
+
+	@Resource
+	private RoleRepository roleRepository;
+
+	@Override
+	public String getName() {
+		return "roles";
+	}
+
+	@Override
+	public void warmUp() {
+		for ( GrantedAuthorityConstants role : GrantedAuthorityConstants.values() ) {
+			roleRepository.findByRole( role );
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.authentication;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.edlogics.common.cache.CacheInvalidationBus;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded, time limited cache of the {@link UserDetails} built by {@link CustomAuthenticationProviderImpl#loadUserByUsername(String)}.
+ * Entries are keyed by the lower cased email address and are evicted whenever the user or one of its roles is written, on
+ * the other nodes too through the {@link CacheInvalidationBus}.
+ *
+ * @author Christopher Savory
+ */
+@Component
+@ConfigurationProperties("app.security.user-details-cache")
+public class UserDetailsCache {
+
+	public static final String NAME = "userDetails";
+
+	@Autowired
+	private CacheInvalidationBus cacheInvalidationBus;
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	private boolean enabled = true;
+
+	private long maximumSize = 10000;
+
+	private long timeToLiveSeconds = 300;
+
+	private Cache<String, UserDetails> cache;
+
+	@PostConstruct
+	public void init() {
+		cache = CacheBuilder.newBuilder()
+				.maximumSize( maximumSize )
+				.expireAfterWrite( timeToLiveSeconds, TimeUnit.SECONDS )
+				.recordStats()
+				.build();
+		cacheInvalidationBus.register( NAME, key -> {
+			if ( key != null ) {
+				cache.invalidate( key );
+			} else {
+				cache.invalidateAll();
+			}
+		} );
+		UserDetailsEvictionListener listener = new UserDetailsEvictionListener( this );
+		EventListenerRegistry registry = emf.unwrap( SessionFactoryImplementor.class ).getServiceRegistry()
+				.getService( EventListenerRegistry.class );
+		registry.appendListeners( EventType.POST_INSERT, listener );
+		registry.appendListeners( EventType.POST_UPDATE, listener );
+		registry.appendListeners( EventType.POST_DELETE, listener );
+	}
+
+	/**
+	 * @param email
+	 * @return the cached user details, or null if there are none
+	 */
+	public UserDetails get( String email ) {
+		if ( !enabled || email == null ) {
+			return null;
+		}
+		return cache.getIfPresent( key( email ) );
+	}
+
+	public void put( String email, UserDetails userDetails ) {
+		if ( enabled && email != null ) {
+			cache.put( key( email ), userDetails );
+		}
+	}
+
+	/**
+	 * Evicts the user right away and again once the current transaction completes, so a concurrent
+	 * lookup can't put back the state that is being replaced.
+	 *
+	 * @param email
+	 */
+	public void evict( final String email ) {
+		if ( email == null ) {
+			return;
+		}
+		cache.invalidate( key( email ) );
+		if ( TransactionSynchronizationManager.isSynchronizationActive() ) {
+			TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion( int status ) {
+					cache.invalidate( key( email ) );
+					cacheInvalidationBus.invalidate( NAME, key( email ) );
+				}
+			} );
+		} else {
+			cacheInvalidationBus.invalidate( NAME, key( email ) );
+		}
+	}
+
+	public void evictAll() {
+		cache.invalidateAll();
+		cacheInvalidationBus.invalidateAll( NAME );
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	private String key( String email ) {
+		return email.toLowerCase( Locale.ENGLISH );
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled( boolean enabled ) {
+		this.enabled = enabled;
+	}
+
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	public void setMaximumSize( long maximumSize ) {
+		this.maximumSize = maximumSize;
+	}
+
+	public long getTimeToLiveSeconds() {
+		return timeToLiveSeconds;
+	}
+
+	public void setTimeToLiveSeconds( long timeToLiveSeconds ) {
+		this.timeToLiveSeconds = timeToLiveSeconds;
+	}
+}
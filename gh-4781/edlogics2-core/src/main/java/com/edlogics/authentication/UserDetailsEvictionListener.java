@@ -0,0 +1,69 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.authentication;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+
+import com.edlogics.users.domain.User;
+import com.edlogics.users.domain.UserRole;
+
+/**
+ * Evicts the {@link org.springframework.security.core.userdetails.UserDetails} of a user from the {@link UserDetailsCache} when one of its roles is granted, changed or
+ * revoked, or the user itself is changed, whichever repository wrote it.
+ *
+ * @author Christopher Savory
+ */
+class UserDetailsEvictionListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient UserDetailsCache userDetailsCache;
+
+	UserDetailsEvictionListener( UserDetailsCache userDetailsCache ) {
+		this.userDetailsCache = userDetailsCache;
+	}
+
+	@Override
+	public void onPostInsert( PostInsertEvent event ) {
+		entityChanged( event.getEntity() );
+	}
+
+	@Override
+	public void onPostUpdate( PostUpdateEvent event ) {
+		entityChanged( event.getEntity() );
+	}
+
+	@Override
+	public void onPostDelete( PostDeleteEvent event ) {
+		entityChanged( event.getEntity() );
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding( EntityPersister persister ) {
+		return false;
+	}
+
+	private void entityChanged( Object entity ) {
+		User user = null;
+		if ( entity instanceof UserRole ) {
+			user = ( (UserRole) entity ).getUser();
+		} else if ( entity instanceof User ) {
+			user = (User) entity;
+		}
+		if ( user != null ) {
+			userDetailsCache.evict( user.getEmail() );
+		}
+	}
+}
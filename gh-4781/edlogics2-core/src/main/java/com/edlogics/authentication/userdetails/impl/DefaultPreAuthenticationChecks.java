@@ -21,6 +21,7 @@ import org.springframework.security.authentication.LockedException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import com.edlogics.authentication.LoginAttemptTracker;
 import com.edlogics.authentication.userdetails.CustomUserDetailsChecker;
 import com.edlogics.config.ApplicationSettings;
 import com.edlogics.users.domain.User;
@@ -42,6 +43,9 @@ public class DefaultPreAuthenticationChecks implements CustomUserDetailsChecker
 	@Autowired
 	ApplicationSettings applicationSettings;
 
+	@Autowired
+	LoginAttemptTracker loginAttemptTracker;
+
 	public DefaultPreAuthenticationChecks() {
 		super();
 	}
@@ -53,7 +57,7 @@ public class DefaultPreAuthenticationChecks implements CustomUserDetailsChecker
 	 */
 	@Override
 	public void check( UserDetails user ) {
-		if ( !user.isAccountNonLocked() ) {
+		if ( !user.isAccountNonLocked() || loginAttemptTracker.isLocked( user.getUsername() ) ) {
 			logger.debug( "User account is locked" );
 
 			throw new LockedException(
@@ -94,7 +98,7 @@ public class DefaultPreAuthenticationChecks implements CustomUserDetailsChecker
 	 */
 	@Override
 	public void check( User user ) {
-		if ( !user.isAccountNonLocked() ) {
+		if ( !user.isAccountNonLocked() || loginAttemptTracker.isLocked( user.getEmail() ) ) {
 			logger.debug( "User account is locked" );
 
 			throw new LockedException(
@@ -145,4 +149,8 @@ public class DefaultPreAuthenticationChecks implements CustomUserDetailsChecker
 	public void setApplicationSettings( ApplicationSettings applicationSettings ) {
 		this.applicationSettings = applicationSettings;
 	}
+
+	public void setLoginAttemptTracker( LoginAttemptTracker loginAttemptTracker ) {
+		this.loginAttemptTracker = loginAttemptTracker;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The cache keys one node changed during one batch interval, by cache name, and the caches it cleared as a whole.
+ * <p/>
+ * Keys are sent by their string form, in JSON: {"nodeId":"...","keys":{"cache":["key",...]},"cleared":["cache",...]}. The
+ * transports receive what anyone sends them, so nothing but strings is ever read back.
+ *
+ * @author Christopher Savory
+ */
+public class CacheInvalidationBatch {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final String nodeId;
+
+	private final HashMap<String, HashSet<String>> keys;
+
+	private final HashSet<String> cleared;
+
+	public CacheInvalidationBatch( String nodeId, HashMap<String, HashSet<String>> keys, HashSet<String> cleared ) {
+		this.nodeId = nodeId;
+		this.keys = keys;
+		this.cleared = cleared;
+	}
+
+	/**
+	 * @return the node that published the batch
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	public Map<String, Set<String>> getKeys() {
+		return Collections.unmodifiableMap( keys );
+	}
+
+	public Set<String> getCleared() {
+		return Collections.unmodifiableSet( cleared );
+	}
+
+	/**
+	 * @return the number of keys plus the number of cleared caches
+	 */
+	public int size() {
+		int size = cleared.size();
+		for ( Set<String> cacheKeys : keys.values() ) {
+			size += cacheKeys.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return a batch that clears every cache this one touches, for when the keys don't fit the transport
+	 */
+	public CacheInvalidationBatch clearingAll() {
+		HashSet<String> all = new HashSet<>( cleared );
+		all.addAll( keys.keySet() );
+		return new CacheInvalidationBatch( nodeId, new HashMap<>(), all );
+	}
+
+	public byte[] toBytes() {
+		ObjectNode json = MAPPER.createObjectNode();
+		json.put( "nodeId", nodeId );
+		ObjectNode keysJson = json.putObject( "keys" );
+		for ( Map.Entry<String, HashSet<String>> cacheKeys : keys.entrySet() ) {
+			ArrayNode keysOfCache = keysJson.putArray( cacheKeys.getKey() );
+			for ( String key : cacheKeys.getValue() ) {
+				keysOfCache.add( key );
+			}
+		}
+		ArrayNode clearedJson = json.putArray( "cleared" );
+		for ( String cacheName : cleared ) {
+			clearedJson.add( cacheName );
+		}
+		try {
+			return MAPPER.writeValueAsBytes( json );
+		} catch ( JsonProcessingException e ) {
+			throw new IllegalStateException( "Could not write the cache invalidation batch", e );
+		}
+	}
+
+	public static CacheInvalidationBatch fromBytes( byte[] bytes ) {
+		JsonNode json;
+		try {
+			json = MAPPER.readTree( bytes );
+		} catch ( IOException e ) {
+			throw new IllegalStateException( "Could not read a cache invalidation batch", e );
+		}
+		if ( json == null || !json.path( "nodeId" ).isTextual() || !json.path( "keys" ).isObject() ) {
+			throw new IllegalStateException( "Not a cache invalidation batch" );
+		}
+		HashMap<String, HashSet<String>> keys = new HashMap<>();
+		for ( Iterator<Map.Entry<String, JsonNode>> fields = json.get( "keys" ).fields(); fields.hasNext(); ) {
+			Map.Entry<String, JsonNode> cacheKeys = fields.next();
+			keys.put( cacheKeys.getKey(), strings( cacheKeys.getValue() ) );
+		}
+		return new CacheInvalidationBatch( json.get( "nodeId" ).asText(), keys, strings( json.path( "cleared" ) ) );
+	}
+
+	private static HashSet<String> strings( JsonNode array ) {
+		if ( !array.isArray() ) {
+			throw new IllegalStateException( "Not a cache invalidation batch" );
+		}
+		HashSet<String> strings = new HashSet<>();
+		for ( JsonNode element : array ) {
+			if ( !element.isTextual() ) {
+				throw new IllegalStateException( "Not a cache invalidation batch" );
+			}
+			strings.add( element.asText() );
+		}
+		return strings;
+	}
+}
@@ -0,0 +1,425 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.Status;
+import net.sf.ehcache.event.CacheEventListener;
+import net.sf.ehcache.event.CacheManagerEventListener;
+import net.sf.ehcache.event.NotificationScope;
+import net.sf.ehcache.util.Timestamper;
+
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells the other nodes which cache entries this node changed, so they drop their copies instead of serving them until
+ * their time to live runs out.
+ * <p/>
+ * Changes come from three places: removes and clears on any Ehcache cache (the @Cacheable caches and the Hibernate regions),
+ * entity and collection writes reported by {@link com.edlogics.common.hibernate.CacheInvalidationEventListener}, and the
+ * in-process caches that {@link #register(String, Consumer) registered} themselves. They are collected for
+ * {@code batchInterval} milliseconds, with repeated keys coalesced and caches with more than {@code maxKeysPerCache} changed
+ * keys sent as a clear, and then published on the {@link CacheInvalidationTransport} as one batch.
+ * <p/>
+ * Keys are sent by their string form, e.g. entity#id for the Hibernate regions, and a key without a string form of its own
+ * is sent as a clear of its cache. The receiving node rebuilds the keys that aren't strings with the
+ * {@link #registerKeyFactory(String, Function) key factory} of their cache. Received batches are applied without notifying the local listeners, so they are not
+ * published again. The Hibernate update timestamps are not removed but set to now, which makes the query cache results of
+ * the changed tables stale. Query cache results themselves are never sent.
+ *
+ * @author Christopher Savory
+ */
+@Component
+@ConfigurationProperties("app.cache.invalidation")
+public class CacheInvalidationBus {
+
+	protected Logger logger = LoggerFactory.getLogger( getClass() );
+
+	@Autowired(required = false)
+	private CacheInvalidationTransport transport;
+
+	private boolean enabled = false;
+
+	private int maxKeysPerCache = 1000;
+
+	/**
+	 * Caches whose changes stay local
+	 */
+	private List<String> excludedCaches = new ArrayList<>();
+
+	private final String nodeId = UUID.randomUUID().toString();
+
+	private final ConcurrentMap<String, Consumer<Object>> localCaches = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Function<String, Object>> keyFactories = new ConcurrentHashMap<>();
+
+	private final Set<CacheManager> listenedCacheManagers = ConcurrentHashMap.newKeySet();
+
+	private final Set<Ehcache> listenedCaches = ConcurrentHashMap.newKeySet();
+
+	private final LocalChangeListener listener = new LocalChangeListener();
+
+	private HashMap<String, HashSet<String>> pendingKeys = new HashMap<>();
+
+	private HashSet<String> pendingClears = new HashSet<>();
+
+	private final LongAdder publishedBatches = new LongAdder();
+
+	private final LongAdder publishedKeys = new LongAdder();
+
+	private final LongAdder publishFailures = new LongAdder();
+
+	private final LongAdder receivedBatches = new LongAdder();
+
+	private final LongAdder receivedKeys = new LongAdder();
+
+	@PostConstruct
+	public void init() {
+		if ( !enabled ) {
+			return;
+		}
+		if ( transport == null ) {
+			logger.warn( "Cache invalidation is enabled but there is no transport, changes stay local" );
+			return;
+		}
+		logger.info( "Publishing cache invalidations as node " + nodeId + " with " + transport.getClass().getSimpleName() );
+		transport.start( this::receive );
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if ( isActive() ) {
+			flush();
+			transport.stop();
+		}
+	}
+
+	/**
+	 * Starts listening to the Ehcache caches, the Hibernate ones only exist once the context is refreshed
+	 */
+	@EventListener
+	public void onContextRefreshed( ContextRefreshedEvent event ) {
+		if ( !isActive() ) {
+			return;
+		}
+		for ( CacheManager cacheManager : CacheManager.ALL_CACHE_MANAGERS ) {
+			if ( listenedCacheManagers.add( cacheManager ) ) {
+				cacheManager.getCacheManagerEventListenerRegistry().registerListener( listener.forManager( cacheManager ) );
+			}
+			for ( String name : cacheManager.getCacheNames() ) {
+				listen( cacheManager.getEhcache( name ) );
+			}
+		}
+	}
+
+	/**
+	 * Lets an in-process cache that is not an Ehcache take part
+	 *
+	 * @param cacheName the name the cache publishes its changes under
+	 * @param invalidator removes a key received from another node, given by its string form, or everything when given null
+	 */
+	public void register( String cacheName, Consumer<Object> invalidator ) {
+		localCaches.put( cacheName, invalidator );
+	}
+
+	/**
+	 * Lets an Ehcache cache whose keys aren't strings have the received keys removed directly
+	 *
+	 * @param cacheName
+	 * @param keyFactory rebuilds a key from its string form, or returns null when it can't
+	 */
+	public void registerKeyFactory( String cacheName, Function<String, Object> keyFactory ) {
+		keyFactories.put( cacheName, keyFactory );
+	}
+
+	/**
+	 * Queues the key for invalidation on the other nodes
+	 *
+	 * @param cacheName
+	 * @param key the key, or null to clear the whole cache
+	 */
+	public void invalidate( String cacheName, Object key ) {
+		if ( !isActive() || excludedCaches.contains( cacheName ) ) {
+			return;
+		}
+		synchronized ( this ) {
+			if ( pendingClears.contains( cacheName ) ) {
+				return;
+			}
+			HashSet<String> keys = pendingKeys.computeIfAbsent( cacheName, name -> new HashSet<>() );
+			if ( key == null || !hasStringForm( key ) || keys.size() >= maxKeysPerCache ) {
+				pendingKeys.remove( cacheName );
+				pendingClears.add( cacheName );
+			} else {
+				keys.add( key.toString() );
+			}
+		}
+	}
+
+	public void invalidateAll( String cacheName ) {
+		invalidate( cacheName, null );
+	}
+
+	/**
+	 * Publishes what was queued since the last flush
+	 */
+	@Scheduled(fixedDelayString = "${app.cache.invalidation.batch-interval:200}")
+	public void flush() {
+		if ( !isActive() ) {
+			return;
+		}
+		CacheInvalidationBatch batch;
+		synchronized ( this ) {
+			if ( pendingKeys.isEmpty() && pendingClears.isEmpty() ) {
+				return;
+			}
+			batch = new CacheInvalidationBatch( nodeId, pendingKeys, pendingClears );
+			pendingKeys = new HashMap<>();
+			pendingClears = new HashSet<>();
+		}
+		try {
+			transport.publish( batch );
+			publishedBatches.increment();
+			publishedKeys.add( batch.size() );
+		} catch ( RuntimeException e ) {
+			publishFailures.increment();
+			logger.error( "Could not publish the invalidation of " + batch.size() + " cache entries", e );
+		}
+	}
+
+	void receive( CacheInvalidationBatch batch ) {
+		if ( nodeId.equals( batch.getNodeId() ) ) {
+			return;
+		}
+		receivedBatches.increment();
+		receivedKeys.add( batch.size() );
+		for ( String cacheName : batch.getCleared() ) {
+			apply( cacheName, null );
+		}
+		for ( Map.Entry<String, Set<String>> keys : batch.getKeys().entrySet() ) {
+			apply( keys.getKey(), keys.getValue() );
+		}
+	}
+
+	/**
+	 * @param keys the string form of the keys to remove, or null to clear the cache
+	 */
+	private void apply( String cacheName, Set<String> keys ) {
+		Consumer<Object> localCache = localCaches.get( cacheName );
+		if ( localCache != null ) {
+			if ( keys == null ) {
+				localCache.accept( null );
+			} else {
+				keys.forEach( localCache );
+			}
+			return;
+		}
+		for ( CacheManager cacheManager : CacheManager.ALL_CACHE_MANAGERS ) {
+			Ehcache cache = cacheManager.getEhcache( cacheName );
+			if ( cache == null || cache.getStatus() != Status.STATUS_ALIVE ) {
+				continue;
+			}
+			// the second argument marks the change as remote, which the local listener doesn't get
+			if ( keys == null ) {
+				cache.removeAll( true );
+			} else if ( UpdateTimestampsCache.REGION_NAME.equals( cacheName ) ) {
+				// keyed by table name
+				for ( String key : keys ) {
+					cache.put( new Element( key, Timestamper.next() ), true );
+				}
+			} else {
+				remove( cache, keys );
+			}
+		}
+	}
+
+	/**
+	 * Keys are rebuilt by the key factory of the cache, e.g. the Hibernate cache keys from entity#id, or else removed as
+	 * strings. Only the keys neither applies to, e.g. of a cache without a key factory keyed by numbers, are found by their
+	 * string form in one pass over the keys of the cache.
+	 */
+	private void remove( Ehcache cache, Set<String> keys ) {
+		Function<String, Object> keyFactory = keyFactories.get( cache.getName() );
+		Set<String> remaining = new HashSet<>();
+		for ( String key : keys ) {
+			Object cacheKey = keyFactory != null ? keyFactory.apply( key ) : null;
+			if ( cacheKey != null ) {
+				cache.remove( cacheKey, true );
+			} else if ( !cache.remove( key, true ) ) {
+				remaining.add( key );
+			}
+		}
+		if ( remaining.isEmpty() ) {
+			return;
+		}
+		for ( Object key : cache.getKeys() ) {
+			if ( !( key instanceof String ) && remaining.contains( String.valueOf( key ) ) ) {
+				cache.remove( key, true );
+			}
+		}
+	}
+
+	/**
+	 * @return whether the key has a toString of its own, the identity hash code means nothing to the other nodes
+	 */
+	private static boolean hasStringForm( Object key ) {
+		try {
+			return key.getClass().getMethod( "toString" ).getDeclaringClass() != Object.class;
+		} catch ( NoSuchMethodException e ) {
+			return false;
+		}
+	}
+
+	private void listen( Ehcache cache ) {
+		if ( cache != null && !StandardQueryCache.class.getName().equals( cache.getName() ) && listenedCaches.add( cache ) ) {
+			cache.getCacheEventNotificationService().registerListener( listener, NotificationScope.LOCAL );
+		}
+	}
+
+	private boolean isActive() {
+		return enabled && transport != null;
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	public long getPublishedBatches() {
+		return publishedBatches.sum();
+	}
+
+	public long getPublishedKeys() {
+		return publishedKeys.sum();
+	}
+
+	public long getPublishFailures() {
+		return publishFailures.sum();
+	}
+
+	public long getReceivedBatches() {
+		return receivedBatches.sum();
+	}
+
+	public long getReceivedKeys() {
+		return receivedKeys.sum();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled( boolean enabled ) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxKeysPerCache() {
+		return maxKeysPerCache;
+	}
+
+	public void setMaxKeysPerCache( int maxKeysPerCache ) {
+		this.maxKeysPerCache = maxKeysPerCache;
+	}
+
+	public List<String> getExcludedCaches() {
+		return excludedCaches;
+	}
+
+	public void setExcludedCaches( List<String> excludedCaches ) {
+		this.excludedCaches = excludedCaches;
+	}
+
+	/**
+	 * Publishes the local removes and clears, and listens to the caches added later. Puts are loads, evictions and
+	 * expiries are local decisions, neither is published.
+	 */
+	private class LocalChangeListener implements CacheEventListener {
+
+		@Override
+		public void notifyElementRemoved( Ehcache cache, Element element ) throws CacheException {
+			invalidate( cache.getName(), element.getObjectKey() );
+		}
+
+		@Override
+		public void notifyRemoveAll( Ehcache cache ) {
+			invalidateAll( cache.getName() );
+		}
+
+		@Override
+		public void notifyElementPut( Ehcache cache, Element element ) throws CacheException {}
+
+		@Override
+		public void notifyElementUpdated( Ehcache cache, Element element ) throws CacheException {}
+
+		@Override
+		public void notifyElementExpired( Ehcache cache, Element element ) {}
+
+		@Override
+		public void notifyElementEvicted( Ehcache cache, Element element ) {}
+
+		@Override
+		public void dispose() {}
+
+		@Override
+		public Object clone() throws CloneNotSupportedException {
+			throw new CloneNotSupportedException( "The cache invalidation listener is shared by all caches" );
+		}
+
+		CacheManagerEventListener forManager( CacheManager cacheManager ) {
+			return new CacheManagerEventListener() {
+
+				@Override
+				public void init() throws CacheException {}
+
+				@Override
+				public Status getStatus() {
+					return Status.STATUS_ALIVE;
+				}
+
+				@Override
+				public void dispose() throws CacheException {}
+
+				@Override
+				public void notifyCacheAdded( String cacheName ) {
+					listen( cacheManager.getEhcache( cacheName ) );
+				}
+
+				@Override
+				public void notifyCacheRemoved( String cacheName ) {}
+			};
+		}
+	}
+}
@@ -0,0 +1,29 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link CacheInvalidationBatch}es between the nodes for the {@link CacheInvalidationBus}. Delivery is best effort,
+ * a lost batch leaves entries stale until their time to live runs out.
+ *
+ * @author Christopher Savory
+ */
+public interface CacheInvalidationTransport {
+
+	/**
+	 * Starts delivering the batches of the other nodes. Batches of this node may be delivered too, the bus skips them.
+	 */
+	void start( Consumer<CacheInvalidationBatch> receiver );
+
+	void publish( CacheInvalidationBatch batch );
+
+	void stop();
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Per thread stack of the @Cacheable invocations in progress. {@link SingleFlightCache} records in the innermost one which
+ * keys the invocation is loading and which keys it should refresh, {@link CacheLoadingInterceptor} acts on them when the
+ * invocation ends. A refresh marks the key it reloads, so the cache misses it once and the invocation loads it again.
+ *
+ * @author Christopher Savory
+ */
+final class CacheLoadingContext {
+
+	private static final ThreadLocal<Deque<CacheLoadingContext>> CONTEXTS = new ThreadLocal<Deque<CacheLoadingContext>>() {
+
+		@Override
+		protected Deque<CacheLoadingContext> initialValue() {
+			return new ArrayDeque<>();
+		}
+	};
+
+	private static final ThreadLocal<Key> REFRESHING = new ThreadLocal<>();
+
+	final List<Key> loads = new ArrayList<>( 1 );
+
+	final List<Key> refreshes = new ArrayList<>( 1 );
+
+	static CacheLoadingContext push() {
+		CacheLoadingContext context = new CacheLoadingContext();
+		CONTEXTS.get().push( context );
+		return context;
+	}
+
+	static void pop() {
+		CONTEXTS.get().pop();
+	}
+
+	/**
+	 * @return the context of the innermost @Cacheable invocation, or null if the cache is used outside of one
+	 */
+	static CacheLoadingContext current() {
+		return CONTEXTS.get().peek();
+	}
+
+	/**
+	 * @return true if an invocation of this thread is already loading the key
+	 */
+	static boolean isLoading( SingleFlightCache cache, Object key ) {
+		for ( CacheLoadingContext context : CONTEXTS.get() ) {
+			for ( Key load : context.loads ) {
+				if ( load.matches( cache, key ) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	static void startRefresh( Key refresh ) {
+		REFRESHING.set( refresh );
+	}
+
+	static void endRefresh() {
+		REFRESHING.remove();
+	}
+
+	/**
+	 * @return true if this thread is refreshing the key and hasn't missed it yet, the next call returns false
+	 */
+	static boolean takeRefresh( SingleFlightCache cache, Object key ) {
+		Key refresh = REFRESHING.get();
+		if ( refresh != null && refresh.matches( cache, key ) ) {
+			REFRESHING.remove();
+			return true;
+		}
+		return false;
+	}
+
+	static final class Key {
+
+		final SingleFlightCache cache;
+
+		final Object key;
+
+		/**
+		 * Released when the load ends, null for refreshes
+		 */
+		final CountDownLatch latch;
+
+		Key( SingleFlightCache cache, Object key, CountDownLatch latch ) {
+			this.cache = cache;
+			this.key = key;
+			this.latch = latch;
+		}
+
+		boolean matches( SingleFlightCache cache, Object key ) {
+			return this.cache == cache && this.key.equals( key );
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+
+/**
+ * Runs around the cache interceptor of every @Cacheable method. It gives {@link SingleFlightCache} a
+ * {@link CacheLoadingContext} to record its loads and refreshes in, releases the waiters of loads that ended without a put,
+ * and submits the refreshes to the executor.
+ * <p/>
+ * A refresh calls the method again through the proxy, with the security context of the invocation that triggered it, so
+ * transactions, security and every other advice apply as they do to a load. The cache misses the refreshed key once for
+ * it, and the cache interceptor puts the result the usual way, {@code unless} condition included.
+ *
+ * @author Christopher Savory
+ */
+public class CacheLoadingInterceptor implements MethodInterceptor {
+
+	protected Logger logger = LoggerFactory.getLogger( getClass() );
+
+	private final Executor executor;
+
+	private final CacheLoadingStatistics statistics;
+
+	public CacheLoadingInterceptor( Executor executor, CacheLoadingStatistics statistics ) {
+		this.executor = executor;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public Object invoke( MethodInvocation invocation ) throws Throwable {
+		CacheLoadingContext context = CacheLoadingContext.push();
+		try {
+			return invocation.proceed();
+		} finally {
+			CacheLoadingContext.pop();
+			for ( CacheLoadingContext.Key load : context.loads ) {
+				load.cache.loaded( load.key, load.latch );
+			}
+			for ( CacheLoadingContext.Key refresh : context.refreshes ) {
+				if ( invocation instanceof ProxyMethodInvocation ) {
+					refresh( ( (ProxyMethodInvocation) invocation ).getProxy(), invocation.getMethod(),
+							invocation.getArguments().clone(), refresh );
+				} else {
+					// no proxy to go through, the entry will be reloaded on expiry instead
+					refresh.cache.refreshed( refresh.key );
+				}
+			}
+		}
+	}
+
+	private void refresh( Object proxy, Method method, Object[] arguments, CacheLoadingContext.Key refresh ) {
+		try {
+			executor.execute( new DelegatingSecurityContextRunnable( () -> {
+				long start = System.nanoTime();
+				boolean failed = false;
+				CacheLoadingContext.startRefresh( refresh );
+				try {
+					AopUtils.invokeJoinpointUsingReflection( proxy, method, arguments );
+				} catch ( Throwable e ) {
+					failed = true;
+					logger.warn( "Could not refresh " + refresh.key + " in cache " + refresh.cache.getName(), e );
+				} finally {
+					CacheLoadingContext.endRefresh();
+					refresh.cache.refreshed( refresh.key );
+					statistics.refreshed( System.nanoTime() - start, failed );
+				}
+			} ) );
+		} catch ( RejectedExecutionException e ) {
+			// the entry will be reloaded on expiry instead
+			refresh.cache.refreshed( refresh.key );
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Counters of {@link SingleFlightCache}: how often concurrent misses were coalesced into one load, and how refresh-ahead
+ * loads went.
+ *
+ * @author Christopher Savory
+ */
+@Component
+public class CacheLoadingStatistics {
+
+	private final LongAdder coalescedCount = new LongAdder();
+
+	private final LongAdder waitTimeoutCount = new LongAdder();
+
+	private final LongAdder refreshCount = new LongAdder();
+
+	private final LongAdder refreshFailureCount = new LongAdder();
+
+	private final LongAdder refreshNanos = new LongAdder();
+
+	private final AtomicLong maxRefreshNanos = new AtomicLong();
+
+	void coalesced() {
+		coalescedCount.increment();
+	}
+
+	void waitTimedOut() {
+		waitTimeoutCount.increment();
+	}
+
+	void refreshed( long nanos, boolean failed ) {
+		refreshCount.increment();
+		if ( failed ) {
+			refreshFailureCount.increment();
+		}
+		refreshNanos.add( nanos );
+		maxRefreshNanos.accumulateAndGet( nanos, Math::max );
+	}
+
+	/**
+	 * @return the number of cache misses that waited for a load already running instead of loading themselves
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.sum();
+	}
+
+	/**
+	 * @return the number of cache misses that gave up waiting for a running load and loaded themselves
+	 */
+	public long getWaitTimeoutCount() {
+		return waitTimeoutCount.sum();
+	}
+
+	public long getRefreshCount() {
+		return refreshCount.sum();
+	}
+
+	public long getRefreshFailureCount() {
+		return refreshFailureCount.sum();
+	}
+
+	public double getAverageRefreshMillis() {
+		long count = refreshCount.sum();
+		return count == 0 ? 0 : refreshNanos.sum() / 1e6 / count;
+	}
+
+	public double getMaxRefreshMillis() {
+		return maxRefreshNanos.get() / 1e6;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.edlogics.common.events.ElrcApplicationStartedEvent;
+
+/**
+ * Runs the {@link CacheWarmer} beans once the application has started, all of them at the same time on the task executor.
+ * The warm-up is complete when every warmer finished (successfully or not) or the time budget ran out, whichever comes first;
+ * until then {@link CacheWarmUpHealthIndicator} reports the node as down so the load balancer keeps sending traffic to the
+ * warm nodes. Warmers still running when the budget runs out are left to finish in the background.
+ * <p/>
+ * Started by the {@link ElrcApplicationStartedEvent}, or by the {@link ApplicationReadyEvent} when deployed in a servlet
+ * container, which doesn't publish the former.
+ *
+ * @author Christopher Savory
+ */
+@Component
+@ConfigurationProperties("app.cache.warm-up")
+public class CacheWarmUp {
+
+	protected Logger logger = LoggerFactory.getLogger( getClass() );
+
+	public enum State {
+		PENDING, RUNNING, COMPLETED, TIMED_OUT, DISABLED
+	}
+
+	@Autowired(required = false)
+	private List<CacheWarmer> warmers = Collections.emptyList();
+
+	@Resource(name = "taskExecutor")
+	private Executor taskExecutor;
+
+	@Resource(name = "scheduler")
+	private TaskScheduler scheduler;
+
+	private boolean enabled = true;
+
+	/**
+	 * How long the node may stay down warming up
+	 */
+	private long timeoutSeconds = 120;
+
+	private final AtomicBoolean started = new AtomicBoolean();
+
+	private volatile State state = State.PENDING;
+
+	private volatile long startTime;
+
+	private volatile long endTime;
+
+	private final AtomicInteger remaining = new AtomicInteger();
+
+	private final AtomicInteger failed = new AtomicInteger();
+
+	private final ConcurrentMap<String, Long> durations = new ConcurrentHashMap<>();
+
+	@EventListener
+	public void onApplicationStarted( ElrcApplicationStartedEvent event ) {
+		start();
+	}
+
+	@EventListener
+	public void onApplicationReady( ApplicationReadyEvent event ) {
+		start();
+	}
+
+	private void start() {
+		if ( !started.compareAndSet( false, true ) ) {
+			return;
+		}
+		startTime = System.currentTimeMillis();
+		if ( !enabled || warmers.isEmpty() ) {
+			state = enabled ? State.COMPLETED : State.DISABLED;
+			endTime = startTime;
+			return;
+		}
+
+		logger.info( "Warming up caches with " + warmers.size() + " warmers" );
+		state = State.RUNNING;
+		remaining.set( warmers.size() );
+		scheduler.schedule( this::timedOut, new Date( startTime + TimeUnit.SECONDS.toMillis( timeoutSeconds ) ) );
+		for ( CacheWarmer warmer : warmers ) {
+			try {
+				taskExecutor.execute( () -> run( warmer ) );
+			} catch ( RejectedExecutionException e ) {
+				logger.warn( "Could not start cache warmer " + warmer.getName(), e );
+				failed.incrementAndGet();
+				finished();
+			}
+		}
+	}
+
+	private void run( CacheWarmer warmer ) {
+		long start = System.currentTimeMillis();
+		try {
+			warmer.warmUp();
+		} catch ( Exception e ) {
+			failed.incrementAndGet();
+			logger.warn( "Cache warmer " + warmer.getName() + " failed", e );
+		} finally {
+			durations.put( warmer.getName(), System.currentTimeMillis() - start );
+			finished();
+		}
+	}
+
+	private void finished() {
+		if ( remaining.decrementAndGet() == 0 ) {
+			end( State.COMPLETED );
+		}
+	}
+
+	private void timedOut() {
+		end( State.TIMED_OUT );
+	}
+
+	private synchronized void end( State end ) {
+		if ( state == State.RUNNING ) {
+			endTime = System.currentTimeMillis();
+			state = end;
+			logger.info( "Cache warm-up " + end.name().toLowerCase() + " in " + ( endTime - startTime ) + "ms, "
+					+ failed.get() + " of " + warmers.size() + " warmers failed" );
+		}
+	}
+
+	/**
+	 * @return true once the warm-up completed or timed out
+	 */
+	public boolean isReady() {
+		State current = state;
+		return current == State.COMPLETED || current == State.TIMED_OUT || current == State.DISABLED;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the time the warm-up has taken so far, or took
+	 */
+	public long getElapsedMillis() {
+		if ( startTime == 0 ) {
+			return 0;
+		}
+		return ( isReady() ? endTime : System.currentTimeMillis() ) - startTime;
+	}
+
+	public int getRemainingCount() {
+		return remaining.get();
+	}
+
+	public int getFailedCount() {
+		return failed.get();
+	}
+
+	/**
+	 * @return the run time of every finished warmer by name
+	 */
+	public Map<String, Long> getDurations() {
+		return Collections.unmodifiableMap( durations );
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled( boolean enabled ) {
+		this.enabled = enabled;
+	}
+
+	public long getTimeoutSeconds() {
+		return timeoutSeconds;
+	}
+
+	public void setTimeoutSeconds( long timeoutSeconds ) {
+		this.timeoutSeconds = timeoutSeconds;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import javax.annotation.Resource;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the node as down until the {@link CacheWarmUp} is complete, at /health as "cacheWarmUp".
+ *
+ * @author Christopher Savory
+ */
+@Component
+public class CacheWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+	@Resource
+	private CacheWarmUp cacheWarmUp;
+
+	@Override
+	protected void doHealthCheck( Health.Builder builder ) throws Exception {
+		if ( cacheWarmUp.isReady() ) {
+			builder.up();
+		} else {
+			builder.down();
+		}
+		builder.withDetail( "state", cacheWarmUp.getState() )
+				.withDetail( "elapsedMillis", cacheWarmUp.getElapsedMillis() )
+				.withDetail( "remaining", cacheWarmUp.getRemainingCount() )
+				.withDetail( "failed", cacheWarmUp.getFailedCount() )
+				.withDetail( "durations", cacheWarmUp.getDurations() );
+	}
+}
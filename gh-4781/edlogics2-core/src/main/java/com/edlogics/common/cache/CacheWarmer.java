@@ -0,0 +1,30 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+/**
+ * A bean that fills caches at startup, before the node reports itself healthy. Warmers run in parallel on the task executor,
+ * see {@link CacheWarmUp}.
+ *
+ * @author Christopher Savory
+ */
+public interface CacheWarmer {
+
+	/**
+	 * @return the name the warmer is reported under in the health details and the logs
+	 */
+	String getName();
+
+	/**
+	 * Loads the entries worth having cached before the first requests arrive
+	 *
+	 * @throws Exception a failure is logged and counted, it doesn't stop the other warmers
+	 */
+	void warmUp() throws Exception;
+}
@@ -0,0 +1,119 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.edlogics.common.cache.domain.CacheInvalidationMessage;
+import com.edlogics.common.cache.repository.CacheInvalidationMessageRepository;
+
+/**
+ * Publishes the batches as rows of the shared database and polls for the rows of the other nodes. Needs nothing but the
+ * database every node already uses, at the price of the poll interval in latency.
+ * <p/>
+ * Ids are taken from a sequence before the rows are committed, so a row can become visible after rows with higher ids. Every
+ * poll therefore looks at all the rows created in the last {@code overlapSeconds}, and applies those it hasn't seen yet. The
+ * creation dates come from the clocks of the nodes, the overlap must be longer than the commit of a row plus the clock
+ * difference between the nodes.
+ *
+ * @author Christopher Savory
+ */
+public class DatabaseCacheInvalidationTransport implements CacheInvalidationTransport {
+
+	protected Logger logger = LoggerFactory.getLogger( getClass() );
+
+	private final CacheInvalidationMessageRepository repository;
+
+	private final long retentionSeconds;
+
+	private final long overlapSeconds;
+
+	private volatile Consumer<CacheInvalidationBatch> receiver;
+
+	/**
+	 * The ids created within the overlap that were already applied
+	 */
+	private Set<Long> seenIds = new HashSet<>();
+
+	private long lastCleanup;
+
+	public DatabaseCacheInvalidationTransport( CacheInvalidationMessageRepository repository, long retentionSeconds,
+			long overlapSeconds ) {
+		if ( overlapSeconds >= retentionSeconds ) {
+			throw new IllegalArgumentException( "The cache invalidation messages must be kept longer than the poll overlap" );
+		}
+		this.repository = repository;
+		this.retentionSeconds = retentionSeconds;
+		this.overlapSeconds = overlapSeconds;
+	}
+
+	@Override
+	public synchronized void start( Consumer<CacheInvalidationBatch> receiver ) {
+		// what was published before this node started is already in the database
+		this.seenIds = new HashSet<>( repository.findIdsByCreatedDateAfter( overlapStart( System.currentTimeMillis() ) ) );
+		this.lastCleanup = System.currentTimeMillis();
+		this.receiver = receiver;
+	}
+
+	@Override
+	public void publish( CacheInvalidationBatch batch ) {
+		repository.save( new CacheInvalidationMessage( batch ) );
+	}
+
+	@Override
+	public void stop() {
+		receiver = null;
+	}
+
+	@Scheduled(fixedDelayString = "${app.cache.invalidation.database.poll-interval:1000}")
+	public synchronized void poll() {
+		Consumer<CacheInvalidationBatch> current = receiver;
+		if ( current == null ) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<Long> ids = repository.findIdsByCreatedDateAfter( overlapStart( now ) );
+		List<Long> newIds = new ArrayList<>();
+		for ( Long id : ids ) {
+			if ( !seenIds.contains( id ) ) {
+				newIds.add( id );
+			}
+		}
+		if ( !newIds.isEmpty() ) {
+			for ( CacheInvalidationMessage message : repository.findByIdInOrderByIdAsc( newIds ) ) {
+				try {
+					current.accept( message.getBatch() );
+				} catch ( RuntimeException e ) {
+					logger.error( "Could not apply cache invalidation message " + message.getId(), e );
+				}
+			}
+		}
+		// the older ids won't be returned again
+		seenIds = new HashSet<>( ids );
+
+		if ( now - lastCleanup > TimeUnit.SECONDS.toMillis( retentionSeconds ) ) {
+			lastCleanup = now;
+			repository.deleteByCreatedDateBefore( new Date( now - TimeUnit.SECONDS.toMillis( retentionSeconds ) ) );
+		}
+	}
+
+	private Date overlapStart( long now ) {
+		return new Date( now - TimeUnit.SECONDS.toMillis( overlapSeconds ) );
+	}
+}
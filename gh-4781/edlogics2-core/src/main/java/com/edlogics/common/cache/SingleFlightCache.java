@@ -0,0 +1,192 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.ehcache.EhCacheCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * An Ehcache backed {@link Cache} that lets only one @Cacheable invocation load a missing key. The first thread that misses
+ * becomes the loader, the others wait for its {@link #put(Object, Object)} and then return the loaded value; if the loader
+ * fails, or doesn't cache its result, one of the waiters loads next.
+ * <p/>
+ * Hits on an entry that is older than {@code refreshAheadRatio} of its time to live, and was read at least
+ * {@code refreshAheadMinHits} times, are scheduled for a background reload by {@link CacheLoadingInterceptor}, so hot entries
+ * are replaced before they expire instead of all their readers missing at once.
+ * <p/>
+ * A nested invocation that misses a key an outer invocation of the same thread is loading loads it too instead of waiting.
+ * <p/>
+ * Gets outside of a @Cacheable invocation (direct use of the cache) behave like the plain {@link EhCacheCache}.
+ *
+ * @author Christopher Savory
+ */
+public class SingleFlightCache implements Cache {
+
+	private final EhCacheCache target;
+
+	private final Ehcache ehcache;
+
+	private final long waitTimeoutMillis;
+
+	private final double refreshAheadRatio;
+
+	private final long refreshAheadMinHits;
+
+	private final CacheLoadingStatistics statistics;
+
+	private final ConcurrentMap<Object, CountDownLatch> loading = new ConcurrentHashMap<>();
+
+	private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+	public SingleFlightCache( EhCacheCache target, long waitTimeoutMillis, double refreshAheadRatio, long refreshAheadMinHits,
+			CacheLoadingStatistics statistics ) {
+		this.target = target;
+		this.ehcache = target.getNativeCache();
+		this.waitTimeoutMillis = waitTimeoutMillis;
+		this.refreshAheadRatio = refreshAheadRatio;
+		this.refreshAheadMinHits = refreshAheadMinHits;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public String getName() {
+		return target.getName();
+	}
+
+	@Override
+	public Ehcache getNativeCache() {
+		return ehcache;
+	}
+
+	@Override
+	public ValueWrapper get( Object key ) {
+		CacheLoadingContext context = CacheLoadingContext.current();
+		if ( context != null && CacheLoadingContext.takeRefresh( this, key ) ) {
+			// a refresh ahead, the invocation reloads the key and puts it
+			return null;
+		}
+		Element element = ehcache.get( key );
+		if ( element != null ) {
+			if ( context != null && isDueForRefresh( element ) && refreshing.add( key ) ) {
+				context.refreshes.add( new CacheLoadingContext.Key( this, key, null ) );
+			}
+			return new SimpleValueWrapper( element.getObjectValue() );
+		}
+		if ( context == null ) {
+			return null;
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( waitTimeoutMillis );
+		boolean waited = false;
+		while ( true ) {
+			CountDownLatch latch = new CountDownLatch( 1 );
+			CountDownLatch running = loading.putIfAbsent( key, latch );
+			if ( running == null ) {
+				context.loads.add( new CacheLoadingContext.Key( this, key, latch ) );
+				return null;
+			}
+			if ( CacheLoadingContext.isLoading( this, key ) ) {
+				// a nested load of the same key on this thread, waiting would wait for itself
+				return null;
+			}
+
+			if ( !waited ) {
+				statistics.coalesced();
+				waited = true;
+			}
+			boolean loaded;
+			try {
+				loaded = running.await( deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+
+			element = ehcache.get( key );
+			if ( element != null ) {
+				return new SimpleValueWrapper( element.getObjectValue() );
+			}
+			if ( !loaded ) {
+				// the loader is stuck, load without waiting for it any longer
+				statistics.waitTimedOut();
+				return null;
+			}
+			// the loader failed or didn't cache its result, try to become the next one
+		}
+	}
+
+	@Override
+	public <T> T get( Object key, Class<T> type ) {
+		return target.get( key, type );
+	}
+
+	@Override
+	public void put( Object key, Object value ) {
+		target.put( key, value );
+		loaded( key, loading.get( key ) );
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent( Object key, Object value ) {
+		ValueWrapper existing = target.putIfAbsent( key, value );
+		loaded( key, loading.get( key ) );
+		return existing;
+	}
+
+	@Override
+	public void evict( Object key ) {
+		target.evict( key );
+	}
+
+	@Override
+	public void clear() {
+		target.clear();
+	}
+
+	/**
+	 * Wakes up the callers waiting for the key
+	 */
+	void loaded( Object key, CountDownLatch latch ) {
+		if ( latch != null ) {
+			loading.remove( key, latch );
+			latch.countDown();
+		}
+	}
+
+	void refreshed( Object key ) {
+		refreshing.remove( key );
+	}
+
+	private boolean isDueForRefresh( Element element ) {
+		if ( refreshAheadRatio <= 0 || refreshAheadRatio >= 1 || element.getHitCount() < refreshAheadMinHits ) {
+			return false;
+		}
+		CacheConfiguration configuration = ehcache.getCacheConfiguration();
+		if ( element.isEternal() || !element.isLifespanSet() && configuration.isEternal() ) {
+			return false;
+		}
+		long timeToLiveSeconds = element.isLifespanSet() ? element.getTimeToLive() : configuration.getTimeToLiveSeconds();
+		if ( timeToLiveSeconds <= 0 ) {
+			return false;
+		}
+		long age = System.currentTimeMillis() - element.getLatestOfCreationAndUpdateTime();
+		return age >= TimeUnit.SECONDS.toMillis( timeToLiveSeconds ) * refreshAheadRatio;
+	}
+}
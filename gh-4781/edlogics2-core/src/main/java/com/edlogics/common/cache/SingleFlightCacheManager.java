@@ -0,0 +1,72 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.ehcache.EhCacheCache;
+
+/**
+ * Wraps the Ehcache caches of another {@link CacheManager} in {@link SingleFlightCache}s. Caches of other types are returned
+ * as they are.
+ *
+ * @author Christopher Savory
+ */
+public class SingleFlightCacheManager implements CacheManager {
+
+	private final CacheManager target;
+
+	private final long waitTimeoutMillis;
+
+	private final double refreshAheadRatio;
+
+	private final long refreshAheadMinHits;
+
+	private final CacheLoadingStatistics statistics;
+
+	private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+	public SingleFlightCacheManager( CacheManager target, long waitTimeoutMillis, double refreshAheadRatio,
+			long refreshAheadMinHits, CacheLoadingStatistics statistics ) {
+		this.target = target;
+		this.waitTimeoutMillis = waitTimeoutMillis;
+		this.refreshAheadRatio = refreshAheadRatio;
+		this.refreshAheadMinHits = refreshAheadMinHits;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public Cache getCache( String name ) {
+		Cache cache = caches.get( name );
+		if ( cache == null ) {
+			Cache targetCache = target.getCache( name );
+			if ( targetCache == null ) {
+				return null;
+			}
+			cache = targetCache instanceof EhCacheCache
+					? new SingleFlightCache( (EhCacheCache) targetCache, waitTimeoutMillis, refreshAheadRatio,
+							refreshAheadMinHits, statistics )
+					: targetCache;
+			Cache existing = caches.putIfAbsent( name, cache );
+			if ( existing != null ) {
+				cache = existing;
+			}
+		}
+		return cache;
+	}
+
+	@Override
+	public Collection<String> getCacheNames() {
+		return target.getCacheNames();
+	}
+}
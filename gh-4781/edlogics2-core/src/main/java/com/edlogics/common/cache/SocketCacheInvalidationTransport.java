@@ -0,0 +1,180 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends every batch as one UDP datagram to a fixed list of peers, and receives the datagrams of the peers on its own port.
+ * With the default loopback address several nodes can run on one machine, each on another port; for nodes on different
+ * machines bind to an address the peers can reach.
+ * <p/>
+ * A batch too large for a datagram is sent as a clear of every cache it touches.
+ * <p/>
+ * With a shared secret every datagram starts with the HMAC-SHA256 of the batch, and datagrams without the right one are
+ * dropped. Without it anyone who can reach the port can clear the caches, so set one unless the nodes only listen on the
+ * loopback address.
+ *
+ * @author Christopher Savory
+ */
+public class SocketCacheInvalidationTransport implements CacheInvalidationTransport {
+
+	private static final int MAX_DATAGRAM_SIZE = 65507;
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private static final int MAC_LENGTH = 32;
+
+	protected Logger logger = LoggerFactory.getLogger( getClass() );
+
+	private final InetSocketAddress address;
+
+	private final List<InetSocketAddress> peers = new ArrayList<>();
+
+	private final SecretKeySpec secret;
+
+	private DatagramSocket socket;
+
+	private Thread receiverThread;
+
+	/**
+	 * @param bindAddress the address to receive on
+	 * @param port the port to receive on
+	 * @param peers the host:port of every other node, comma separated
+	 * @param secret the secret shared by all nodes to sign the datagrams with, or empty not to sign them
+	 */
+	public SocketCacheInvalidationTransport( String bindAddress, int port, String peers, String secret ) {
+		this.address = new InetSocketAddress( bindAddress, port );
+		this.secret = StringUtils.isNotEmpty( secret ) ? new SecretKeySpec( secret.getBytes( StandardCharsets.UTF_8 ), MAC_ALGORITHM ) : null;
+		if ( this.secret == null && ( address.getAddress() == null || !address.getAddress().isLoopbackAddress() ) ) {
+			logger.warn( "Cache invalidations on " + address + " are not signed, set a shared secret" );
+		}
+		for ( String peer : StringUtils.split( StringUtils.defaultString( peers ), ',' ) ) {
+			String hostAndPort = peer.trim();
+			int colon = hostAndPort.lastIndexOf( ':' );
+			if ( colon < 0 ) {
+				throw new IllegalArgumentException( "Cache invalidation peer " + hostAndPort + " is not host:port" );
+			}
+			InetSocketAddress peerAddress = new InetSocketAddress( hostAndPort.substring( 0, colon ),
+					Integer.parseInt( hostAndPort.substring( colon + 1 ) ) );
+			if ( !peerAddress.equals( address ) ) {
+				this.peers.add( peerAddress );
+			}
+		}
+	}
+
+	@Override
+	public synchronized void start( Consumer<CacheInvalidationBatch> receiver ) {
+		try {
+			socket = new DatagramSocket( address );
+		} catch ( SocketException e ) {
+			throw new IllegalStateException( "Could not listen for cache invalidations on " + address, e );
+		}
+		DatagramSocket receiving = socket;
+		receiverThread = new Thread( () -> {
+			byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+			while ( !receiving.isClosed() ) {
+				DatagramPacket packet = new DatagramPacket( buffer, buffer.length );
+				try {
+					receiving.receive( packet );
+					byte[] bytes = verify( Arrays.copyOf( packet.getData(), packet.getLength() ) );
+					if ( bytes == null ) {
+						logger.warn( "Dropped an unsigned cache invalidation datagram from " + packet.getSocketAddress() );
+						continue;
+					}
+					receiver.accept( CacheInvalidationBatch.fromBytes( bytes ) );
+				} catch ( IOException e ) {
+					if ( !receiving.isClosed() ) {
+						logger.error( "Could not receive cache invalidations", e );
+					}
+				} catch ( RuntimeException e ) {
+					logger.error( "Could not apply the cache invalidations from " + packet.getSocketAddress(), e );
+				}
+			}
+		}, "cache-invalidation-receiver" );
+		receiverThread.setDaemon( true );
+		receiverThread.start();
+	}
+
+	@Override
+	public void publish( CacheInvalidationBatch batch ) {
+		byte[] bytes = sign( batch.toBytes() );
+		if ( bytes.length > MAX_DATAGRAM_SIZE ) {
+			bytes = sign( batch.clearingAll().toBytes() );
+		}
+		for ( InetSocketAddress peer : peers ) {
+			try {
+				socket.send( new DatagramPacket( bytes, bytes.length, peer ) );
+			} catch ( IOException e ) {
+				// the other peers should still get it
+				logger.warn( "Could not send cache invalidations to " + peer, e );
+			}
+		}
+	}
+
+	private byte[] sign( byte[] bytes ) {
+		if ( secret == null ) {
+			return bytes;
+		}
+		byte[] signed = Arrays.copyOf( mac( bytes, 0 ), MAC_LENGTH + bytes.length );
+		System.arraycopy( bytes, 0, signed, MAC_LENGTH, bytes.length );
+		return signed;
+	}
+
+	/**
+	 * @return the batch in the datagram, or null if it isn't signed with the secret
+	 */
+	private byte[] verify( byte[] datagram ) {
+		if ( secret == null ) {
+			return datagram;
+		}
+		if ( datagram.length < MAC_LENGTH
+				|| !MessageDigest.isEqual( Arrays.copyOf( datagram, MAC_LENGTH ), mac( datagram, MAC_LENGTH ) ) ) {
+			return null;
+		}
+		return Arrays.copyOfRange( datagram, MAC_LENGTH, datagram.length );
+	}
+
+	private byte[] mac( byte[] bytes, int offset ) {
+		try {
+			// a Mac is not thread safe, and there is at most one datagram per batch interval
+			Mac mac = Mac.getInstance( MAC_ALGORITHM );
+			mac.init( secret );
+			mac.update( bytes, offset, bytes.length - offset );
+			return mac.doFinal();
+		} catch ( GeneralSecurityException e ) {
+			throw new IllegalStateException( "Could not sign the cache invalidations", e );
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		if ( socket != null ) {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache.domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import com.edlogics.common.cache.CacheInvalidationBatch;
+import com.edlogics.common.domain.AbstractEntity;
+
+/**
+ * A {@link CacheInvalidationBatch} published through the database. Rows are only read by the other nodes and deleted after
+ * a few minutes.
+ *
+ * @author Christopher Savory
+ *
+ */
+@Entity
+@Table(name = "cache_invalidation_message")
+public class CacheInvalidationMessage extends AbstractEntity<Long> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Column(nullable = false, length = 36)
+	private String nodeId;
+
+	@Lob
+	@Column(nullable = false)
+	private byte[] payload;
+
+	public CacheInvalidationMessage() {
+		super();
+	}
+
+	public CacheInvalidationMessage( CacheInvalidationBatch batch ) {
+		super();
+		this.nodeId = batch.getNodeId();
+		this.payload = batch.toBytes();
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	public CacheInvalidationBatch getBatch() {
+		return CacheInvalidationBatch.fromBytes( payload );
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.cache.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.edlogics.common.cache.domain.CacheInvalidationMessage;
+
+/**
+ * Spring JPA for the cache_invalidation_message table
+ *
+ * @author Christopher Savory
+ *
+ */
+public interface CacheInvalidationMessageRepository extends JpaRepository<CacheInvalidationMessage, Long> {
+
+	/**
+	 * @param date
+	 * @return the ids of the messages created after the date
+	 */
+	@Query("select m.id from CacheInvalidationMessage m where m.createdDate > :date")
+	List<Long> findIdsByCreatedDateAfter( @Param("date") Date date );
+
+	/**
+	 * Retrieve the given messages, oldest first
+	 *
+	 * @param ids
+	 * @return
+	 */
+	List<CacheInvalidationMessage> findByIdInOrderByIdAsc( Collection<Long> ids );
+
+	/**
+	 * Deletes the messages every node had the time to read
+	 *
+	 * @param date
+	 * @return the number of deleted messages
+	 */
+	@Modifying
+	@Transactional
+	@Query("delete from CacheInvalidationMessage m where m.createdDate < :date")
+	int deleteByCreatedDateBefore( @Param("date") Date date );
+}
@@ -0,0 +1,119 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.hibernate;
+
+import java.io.Serializable;
+
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import com.edlogics.common.cache.CacheInvalidationBus;
+
+/**
+ * Publishes the second level cache keys and the query spaces of the entities and collections a transaction changed on the
+ * {@link CacheInvalidationBus}, once the transaction committed. Inserts are not published, the other nodes can't have
+ * cached what didn't exist, but their query spaces are through the update timestamps Hibernate keeps anyway.
+ *
+ * @author Christopher Savory
+ */
+public class CacheInvalidationEventListener implements PostUpdateEventListener, PostDeleteEventListener,
+		PostCollectionUpdateEventListener, PostCollectionRemoveEventListener, PostCollectionRecreateEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient CacheInvalidationBus bus;
+
+	public CacheInvalidationEventListener( CacheInvalidationBus bus ) {
+		this.bus = bus;
+	}
+
+	@Override
+	public void onPostUpdate( PostUpdateEvent event ) {
+		entityChanged( event.getSession(), event.getPersister(), event.getId() );
+	}
+
+	@Override
+	public void onPostDelete( PostDeleteEvent event ) {
+		entityChanged( event.getSession(), event.getPersister(), event.getId() );
+	}
+
+	@Override
+	public boolean requiresPostCommitHanding( EntityPersister persister ) {
+		return false;
+	}
+
+	@Override
+	public void onPostUpdateCollection( PostCollectionUpdateEvent event ) {
+		collectionChanged( event );
+	}
+
+	@Override
+	public void onPostRemoveCollection( PostCollectionRemoveEvent event ) {
+		collectionChanged( event );
+	}
+
+	@Override
+	public void onPostRecreateCollection( PostCollectionRecreateEvent event ) {
+		collectionChanged( event );
+	}
+
+	private void entityChanged( EventSource session, EntityPersister persister, Serializable id ) {
+		String region = null;
+		Object key = null;
+		if ( persister.hasCache() ) {
+			region = persister.getCacheAccessStrategy().getRegion().getName();
+			key = session.generateCacheKey( id, persister.getIdentifierType(), persister.getRootEntityName() );
+		}
+		afterCommit( session, region, key, persister.getQuerySpaces() );
+	}
+
+	private void collectionChanged( AbstractCollectionEvent event ) {
+		EventSource session = event.getSession();
+		PersistentCollection collection = event.getCollection();
+		if ( collection.getRole() == null ) {
+			return;
+		}
+		CollectionPersister persister = session.getFactory().getCollectionPersister( collection.getRole() );
+		String region = null;
+		Object key = null;
+		if ( persister.hasCache() && collection.getKey() != null ) {
+			region = persister.getCacheAccessStrategy().getRegion().getName();
+			key = session.generateCacheKey( collection.getKey(), persister.getKeyType(), persister.getRole() );
+		}
+		afterCommit( session, region, key, persister.getCollectionSpaces() );
+	}
+
+	private void afterCommit( EventSource session, String region, Object key, Serializable[] querySpaces ) {
+		session.getActionQueue().registerProcess( ( success, completedSession ) -> {
+			if ( !success ) {
+				return;
+			}
+			if ( region != null ) {
+				bus.invalidate( region, key );
+			}
+			for ( Serializable space : querySpaces ) {
+				bus.invalidate( UpdateTimestampsCache.REGION_NAME, space );
+			}
+		} );
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.hibernate;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.StringRepresentableType;
+import org.hibernate.type.Type;
+
+import com.edlogics.common.cache.CacheInvalidationBus;
+
+/**
+ * Rebuilds the second level cache keys of one region from the entity#id form they are published in by the
+ * {@link CacheInvalidationEventListener}, so a node receiving them can remove them without going over the keys of the region.
+ * Returns null for the keys it can't rebuild, e.g. of an identifier type without a string form, which the bus then looks for
+ * the slow way.
+ *
+ * @author Christopher Savory
+ */
+public class CacheKeyFactory implements Function<String, Object> {
+
+	private final SessionFactoryImplementor sessionFactory;
+
+	/**
+	 * The identifier or collection key type by root entity name or collection role
+	 */
+	private final Map<String, Type> keyTypes = new HashMap<>();
+
+	private CacheKeyFactory( SessionFactoryImplementor sessionFactory ) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	/**
+	 * Registers a key factory for every cached entity and collection region of the session factory
+	 */
+	public static void registerAll( SessionFactoryImplementor sessionFactory, CacheInvalidationBus bus ) {
+		Map<String, CacheKeyFactory> factories = new HashMap<>();
+		for ( EntityPersister persister : sessionFactory.getEntityPersisters().values() ) {
+			if ( persister.hasCache() ) {
+				factories.computeIfAbsent( persister.getCacheAccessStrategy().getRegion().getName(),
+						region -> new CacheKeyFactory( sessionFactory ) ).keyTypes
+						.put( persister.getRootEntityName(), persister.getIdentifierType() );
+			}
+		}
+		for ( CollectionPersister persister : sessionFactory.getCollectionPersisters().values() ) {
+			if ( persister.hasCache() ) {
+				factories.computeIfAbsent( persister.getCacheAccessStrategy().getRegion().getName(),
+						region -> new CacheKeyFactory( sessionFactory ) ).keyTypes
+						.put( persister.getRole(), persister.getKeyType() );
+			}
+		}
+		factories.forEach( bus::registerKeyFactory );
+	}
+
+	@Override
+	public Object apply( String key ) {
+		int separator = key.indexOf( '#' );
+		if ( separator < 0 ) {
+			return null;
+		}
+		String entityOrRoleName = key.substring( 0, separator );
+		Type type = keyTypes.get( entityOrRoleName );
+		if ( !( type instanceof StringRepresentableType ) ) {
+			return null;
+		}
+		Object id;
+		try {
+			id = ( (StringRepresentableType<?>) type ).fromStringValue( key.substring( separator + 1 ) );
+		} catch ( RuntimeException e ) {
+			return null;
+		}
+		if ( !( id instanceof Serializable ) ) {
+			return null;
+		}
+		return new CacheKey( (Serializable) id, type, entityOrRoleName, null, sessionFactory );
+	}
+}
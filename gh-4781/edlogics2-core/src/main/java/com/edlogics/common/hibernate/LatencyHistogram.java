@@ -0,0 +1,91 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.hibernate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values, e.g. milliseconds. Values are counted in buckets of one eighth of a power of
+ * two, so a percentile read from it is within 12.5% of the real value.
+ *
+ * @author Christopher Savory
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKETS = ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+
+	public void record( long value ) {
+		counts.incrementAndGet( bucket( Math.max( 0, value ) ) );
+	}
+
+	/**
+	 * @return a copy of the bucket counts, for {@link #percentile(long[], double)}
+	 */
+	public long[] counts() {
+		long[] copy = new long[BUCKETS];
+		for ( int i = 0; i < BUCKETS; i++ ) {
+			copy[i] = counts.get( i );
+		}
+		return copy;
+	}
+
+	public void clear() {
+		for ( int i = 0; i < BUCKETS; i++ ) {
+			counts.set( i, 0 );
+		}
+	}
+
+	/**
+	 * @param counts bucket counts from {@link #counts()}, or the difference of two of them
+	 * @param percentile between 0 and 1
+	 * @return the upper bound of the bucket holding the percentile, or 0 if nothing was recorded
+	 */
+	public static long percentile( long[] counts, double percentile ) {
+		long total = 0;
+		for ( long count : counts ) {
+			total += count;
+		}
+		if ( total == 0 ) {
+			return 0;
+		}
+		long rank = (long) Math.ceil( percentile * total );
+		long seen = 0;
+		for ( int i = 0; i < counts.length; i++ ) {
+			seen += counts[i];
+			if ( seen >= Math.max( rank, 1 ) ) {
+				return upperBound( i );
+			}
+		}
+		return upperBound( counts.length - 1 );
+	}
+
+	static int bucket( long value ) {
+		if ( value < SUB_BUCKETS ) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros( value );
+		int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+		return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+	}
+
+	static long upperBound( int bucket ) {
+		if ( bucket < SUB_BUCKETS ) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return ( ( SUB_BUCKETS + subBucket + 1 ) << ( exponent - SUB_BUCKET_BITS ) ) - 1;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.hibernate;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Hibernate statistics that also keep a histogram of every query execution time, which the cumulative min/avg/max of
+ * {@link org.hibernate.stat.QueryStatistics} can't provide.
+ * <p/>
+ * Enabled with hibernate.stats.factory set to {@link Factory}.
+ *
+ * @author Christopher Savory
+ */
+public class LatencyRecordingStatistics extends ConcurrentStatisticsImpl {
+
+	private final LatencyHistogram queryExecutionTimes = new LatencyHistogram();
+
+	public LatencyRecordingStatistics( SessionFactoryImplementor sessionFactory ) {
+		super( sessionFactory );
+	}
+
+	@Override
+	public void queryExecuted( String hql, int rows, long time ) {
+		super.queryExecuted( hql, rows, time );
+		queryExecutionTimes.record( time );
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		queryExecutionTimes.clear();
+	}
+
+	/**
+	 * @return the execution times of all queries in milliseconds
+	 */
+	public LatencyHistogram getQueryExecutionTimes() {
+		return queryExecutionTimes;
+	}
+
+	public static class Factory implements StatisticsFactory {
+
+		@Override
+		public StatisticsImplementor buildStatistics( SessionFactoryImplementor sessionFactory ) {
+			return new LatencyRecordingStatistics( sessionFactory );
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.http;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.Assert;
+
+/**
+ * Tags requests as static content, fonts, stylesheets, public API, public pages or protected, from rules compiled once at
+ * startup into a trie of path segments and a table of file extensions. A request is classified once and the classification is
+ * kept as a request attribute, so the filters and the security configuration don't each match the path again.
+ * <p/>
+ * Path rules are either exact paths, e.g. /help, or paths with everything below them, e.g. /js/** which also matches /js
+ * itself, optionally limited to an extension, e.g. /healthscratch/**&#47;*.js. Paths, and the extensions of path rules,
+ * match case sensitively like the ant matchers of Spring Security, the most specific rule wins. The extension rules only
+ * refine the category, whether the request is permitted without authentication depends on the path alone.
+ *
+ * @author Christopher Savory
+ */
+public final class RequestClassifier {
+
+	public static final String CLASSIFICATION_ATTRIBUTE = RequestClassifier.class.getName() + ".CLASSIFICATION";
+
+	public enum Category {
+		STATIC, FONT, STYLESHEET, PUBLIC_API, PUBLIC, PROTECTED
+	}
+
+	private final Node root;
+
+	private final Map<String, Category> extensions;
+
+	private RequestClassifier( Builder builder ) {
+		this.root = builder.root;
+		this.extensions = Collections.unmodifiableMap( new HashMap<>( builder.extensions ) );
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return the classification of the request, computed on the first call for a path
+	 */
+	public Classification classify( HttpServletRequest request ) {
+		String path = getPath( request );
+		Object attribute = request.getAttribute( CLASSIFICATION_ATTRIBUTE );
+		if ( attribute instanceof Classification && ( (Classification) attribute ).path.equals( path ) ) {
+			return (Classification) attribute;
+		}
+		Classification classification = classify( path );
+		request.setAttribute( CLASSIFICATION_ATTRIBUTE, classification );
+		return classification;
+	}
+
+	public Classification classify( String path ) {
+		String extension = getExtension( path );
+		Category pathCategory = classifyPath( path, getPathExtension( path ) );
+		if ( pathCategory == null ) {
+			pathCategory = Category.PROTECTED;
+		}
+		Category extensionCategory = extension != null ? extensions.get( extension ) : null;
+		return new Classification( path, extensionCategory != null ? extensionCategory : pathCategory, extension,
+				pathCategory != Category.PROTECTED );
+	}
+
+	/**
+	 * @return a matcher of the requests permitted without authentication
+	 */
+	public RequestMatcher permittedMatcher() {
+		return request -> classify( request ).isPermitted();
+	}
+
+	private Category classifyPath( String path, String extension ) {
+		boolean trailingSlash = path.length() > 1 && path.endsWith( "/" );
+		Node node = root;
+		Category found = null;
+		int start = 0;
+		while ( node != null ) {
+			while ( start < path.length() && path.charAt( start ) == '/' ) {
+				start++;
+			}
+			if ( start >= path.length() ) {
+				if ( node.exact != null && !trailingSlash ) {
+					return node.exact;
+				}
+				return node.below != null ? node.below : found;
+			}
+			if ( node.below != null ) {
+				found = node.below;
+			}
+			if ( extension != null && node.belowByExtension.containsKey( extension ) ) {
+				found = node.belowByExtension.get( extension );
+			}
+			int end = path.indexOf( '/', start );
+			if ( end < 0 ) {
+				end = path.length();
+			}
+			node = node.children.get( path.substring( start, end ) );
+			start = end;
+		}
+		return found;
+	}
+
+	/**
+	 * The path the ant matchers of Spring Security match
+	 */
+	private static String getPath( HttpServletRequest request ) {
+		String pathInfo = request.getPathInfo();
+		return pathInfo != null ? request.getServletPath() + pathInfo : request.getServletPath();
+	}
+
+	/**
+	 * @return the lower case extension of the last path segment, or null
+	 */
+	private static String getExtension( String path ) {
+		int dot = path.lastIndexOf( '.' );
+		if ( dot < 0 || dot == path.length() - 1 || path.indexOf( '/', dot ) >= 0 ) {
+			return null;
+		}
+		return path.substring( dot + 1 ).toLowerCase( Locale.ENGLISH );
+	}
+
+	/**
+	 * @return the extension of the last path segment as an ant pattern like /**&#47;*.js sees it: in its own case, and ignoring
+	 *         any trailing slashes, or null
+	 */
+	private static String getPathExtension( String path ) {
+		int end = path.length();
+		while ( end > 0 && path.charAt( end - 1 ) == '/' ) {
+			end--;
+		}
+		int dot = path.lastIndexOf( '.', end - 1 );
+		if ( dot <= path.lastIndexOf( '/', end - 1 ) || dot == end - 1 ) {
+			return null;
+		}
+		return path.substring( dot + 1, end );
+	}
+
+	public static final class Classification {
+
+		private final String path;
+
+		private final Category category;
+
+		private final String extension;
+
+		private final boolean permitted;
+
+		private Classification( String path, Category category, String extension, boolean permitted ) {
+			this.path = path;
+			this.category = category;
+			this.extension = extension;
+			this.permitted = permitted;
+		}
+
+		public Category getCategory() {
+			return category;
+		}
+
+		/**
+		 * @return the lower case extension, or null
+		 */
+		public String getExtension() {
+			return extension;
+		}
+
+		/**
+		 * @return whether the request is permitted without authentication
+		 */
+		public boolean isPermitted() {
+			return permitted;
+		}
+
+		@Override
+		public String toString() {
+			return path + " " + category + ( permitted ? "" : " (protected)" );
+		}
+	}
+
+	public static final class Builder {
+
+		private final Node root = new Node();
+
+		private final Map<String, Category> extensions = new HashMap<>();
+
+		private Builder() {}
+
+		/**
+		 * The path only, e.g. /help
+		 */
+		public Builder path( String path, Category category ) {
+			node( path ).exact = category;
+			return this;
+		}
+
+		/**
+		 * The path and everything below it, e.g. /js for /js/**
+		 */
+		public Builder pathAndBelow( String path, Category category ) {
+			node( path ).below = category;
+			return this;
+		}
+
+		/**
+		 * The files with the extension, in that case, below the path, e.g. /healthscratch and js for /healthscratch/**&#47;*.js
+		 */
+		public Builder pathAndBelow( String path, String extension, Category category ) {
+			node( path ).belowByExtension.put( extension, category );
+			return this;
+		}
+
+		/**
+		 * The files with the extension wherever they are, e.g. woff for fonts
+		 */
+		public Builder extension( String extension, Category category ) {
+			extensions.put( extension.toLowerCase( Locale.ENGLISH ), category );
+			return this;
+		}
+
+		public RequestClassifier build() {
+			return new RequestClassifier( this );
+		}
+
+		private Node node( String path ) {
+			Assert.isTrue( path.startsWith( "/" ), "Paths must start with /: " + path );
+			Node node = root;
+			for ( String segment : path.split( "/" ) ) {
+				if ( !segment.isEmpty() ) {
+					Node child = node.children.get( segment );
+					if ( child == null ) {
+						child = new Node();
+						node.children.put( segment, child );
+					}
+					node = child;
+				}
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * Not modified after the classifier is built
+	 */
+	private static final class Node {
+
+		private final Map<String, Node> children = new HashMap<>();
+
+		private final Map<String, Category> belowByExtension = new HashMap<>();
+
+		private Category exact;
+
+		private Category below;
+	}
+}
@@ -10,19 +10,22 @@ package com.edlogics.common.http.filters;
 
 import java.io.IOException;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpRequest;
-import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.edlogics.common.http.RequestClassifier;
+import com.edlogics.common.http.RequestClassifier.Category;
+
 /**
  * @author edlogics
  *
@@ -33,19 +36,25 @@ public class SimpleCorsFilter extends OncePerRequestFilter {
 	@Value("${app.resource.url-root}")
 	String resourceUrlRoot;
 
-	private static final String TTF = "ttf";
-	private static final String TTC = "ttc";
-	private static final String OTF = "otf";
-	private static final String EOT = "eot";
-	private static final String WOFF = "woff";
-	private static final String FONT_CSS = "font.css";
-	private static final String CSS = "css";
-	private static final String LESS = "less";
+	@Autowired
+	private RequestClassifier requestClassifier;
+
+	/**
+	 * The host of the resource URL root, parsed once
+	 */
+	private String resourceHost;
 
 	public SimpleCorsFilter() {
 		super();
 	}
 
+	@PostConstruct
+	public void init() {
+		if ( StringUtils.isNotEmpty( resourceUrlRoot ) ) {
+			resourceHost = UriComponentsBuilder.fromUriString( resourceUrlRoot ).build().getHost();
+		}
+	}
+
 	@Override
 	protected void doFilterInternal(
 			HttpServletRequest request,
@@ -62,28 +71,32 @@ public class SimpleCorsFilter extends OncePerRequestFilter {
 	}
 
 	protected boolean shouldAddCorsHeaders( HttpServletRequest request ) throws ServletException, IOException {
-		String requestedUri = request.getRequestURI();
-		if ( StringUtils.endsWithIgnoreCase( requestedUri, TTF ) ||
-				StringUtils.endsWithIgnoreCase( requestedUri, TTC ) ||
-				StringUtils.endsWithIgnoreCase( requestedUri, OTF ) ||
-				StringUtils.endsWithIgnoreCase( requestedUri, EOT ) ||
-				StringUtils.endsWithIgnoreCase( requestedUri, WOFF ) ||
-				StringUtils.endsWithIgnoreCase( requestedUri, FONT_CSS ) ||
-				StringUtils.endsWithIgnoreCase( requestedUri, CSS ) ||
-				StringUtils.endsWithIgnoreCase( requestedUri, LESS ) ) {
+		Category category = requestClassifier.classify( request ).getCategory();
+		if ( category == Category.FONT || category == Category.STYLESHEET ) {
 			return true;
 		}
 
 		//Check to see if the domain is our Resource Domain
-		if ( resourceUrlRoot != null ) {
-			HttpRequest httpRequest = new ServletServerHttpRequest( request );
-			if ( UriComponentsBuilder.fromHttpRequest( httpRequest ).build().getHost().equals( UriComponentsBuilder.fromUriString( resourceUrlRoot ).build().getHost() )
-					|| UriComponentsBuilder.fromUriString( resourceUrlRoot ).build().getHost().equals( request.getHeader( "Host" ) )
-					|| UriComponentsBuilder.fromUriString( resourceUrlRoot ).build().getHost().equals( request.getHeader( "Origin" ) ) ) {
+		if ( resourceHost != null ) {
+			if ( resourceHost.equals( getRequestHost( request ) )
+					|| resourceHost.equals( request.getHeader( "Host" ) )
+					|| resourceHost.equals( request.getHeader( "Origin" ) ) ) {
 				return true;
 			}
 		}
 
 		return false;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The host UriComponentsBuilder.fromHttpRequest gives, without building the whole URI
+	 */
+	private String getRequestHost( HttpServletRequest request ) {
+		String forwardedHost = request.getHeader( "X-Forwarded-Host" );
+		if ( StringUtils.isNotEmpty( forwardedHost ) ) {
+			String host = StringUtils.substringBefore( forwardedHost, "," ).trim();
+			return StringUtils.substringBefore( host, ":" );
+		}
+		return request.getServerName();
+	}
+}
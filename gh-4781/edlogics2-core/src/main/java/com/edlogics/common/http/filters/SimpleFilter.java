@@ -19,8 +19,11 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.edlogics.common.http.RequestClassifier;
+
 /**
  * Filter that adds the correct content type for .json extensions
  *
@@ -30,13 +33,16 @@ import org.springframework.stereotype.Component;
 @Component
 public class SimpleFilter implements Filter {
 
+	@Autowired
+	private RequestClassifier requestClassifier;
+
 	@Override
 	public void doFilter( ServletRequest req, ServletResponse res, FilterChain chain ) throws IOException, ServletException {
 		HttpServletRequest request = (HttpServletRequest) req;
 		HttpServletResponse response = (HttpServletResponse) res;
 
 		//Make sure the content type is set correctly for direct access to .json files
-		if ( request.getRequestURI().endsWith( ".json" ) ) {
+		if ( "json".equals( requestClassifier.classify( request ).getExtension() ) ) {
 			response.setContentType( "application/json" );
 		}
 
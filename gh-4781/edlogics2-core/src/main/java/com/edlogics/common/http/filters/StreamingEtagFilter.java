@@ -0,0 +1,527 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.common.http.filters;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.PathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Adds ETags to GET responses, and answers 304 when the client already has the content. Replaces the ShallowEtagHeaderFilter,
+ * which copies every response body in full before hashing it.
+ * <ul>
+ * <li>Fingerprinted resources, e.g. /js/app-&lt;md5&gt;.js under one of the fingerprintedPaths, use the content hash of
+ * their URL as a weak ETag, as the gzipped and the identity variant share it. A matching If-None-Match is passed on as a HEAD request, so the resource is resolved
+ * but not read, and answered 304 with the headers of the handler, e.g. Cache-Control, if the resource exists.</li>
+ * <li>Other responses are digested as they are written, and only held back until the end of the request while they are
+ * smaller than maxBufferSize. Larger ones, as well as responses with an error status, are streamed out as they are written
+ * and don't get an ETag.</li>
+ * <li>Requests to the excludedPaths, e.g. streaming SockJS transports, are not touched.</li>
+ * <li>Handlers that send a file without copying it through the heap set the {@link #STREAMED_ATTRIBUTE} before they set the
+ * length, and their responses are streamed out whatever their size.</li>
+ * </ul>
+ *
+ * @author Christopher Savory
+ */
+@Component
+@ConfigurationProperties("app.etag")
+public class StreamingEtagFilter extends OncePerRequestFilter {
+
+	public static final String STREAMED_ATTRIBUTE = StreamingEtagFilter.class.getName() + ".STREAMED";
+
+	/**
+	 * The version inserted in the file name by the FileNameVersionPathStrategy, an MD5 hash of the content
+	 */
+	private static final Pattern FINGERPRINT = Pattern.compile( "-([0-9a-f]{32})\\.[^/.]+$" );
+
+	private static final String HEADER_ETAG = "ETag";
+
+	private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+	private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+	@Value("${spring.fingerprinted-resources.enabled:false}")
+	private boolean fingerprintedResourcesEnabled;
+
+	private boolean enabled = true;
+
+	/**
+	 * The largest response body, in bytes, held back to get an ETag
+	 */
+	private int maxBufferSize = 512 * 1024;
+
+	/**
+	 * Ant patterns of the paths, within the application, whose responses never get an ETag
+	 */
+	private List<String> excludedPaths = new ArrayList<>();
+
+	/**
+	 * Ant patterns of the paths, within the application, of the resource handlers serving fingerprinted resources
+	 */
+	private List<String> fingerprintedPaths = new ArrayList<>();
+
+	private final PathMatcher pathMatcher = new AntPathMatcher();
+
+	private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+	@Override
+	protected void doFilterInternal( HttpServletRequest request, HttpServletResponse response, FilterChain filterChain )
+			throws ServletException, IOException {
+		if ( !enabled || !"GET".equals( request.getMethod() ) ) {
+			filterChain.doFilter( request, response );
+			return;
+		}
+		String path = excludedPaths.isEmpty() && fingerprintedPaths.isEmpty() ? null : urlPathHelper.getPathWithinApplication( request );
+		if ( matchesAny( excludedPaths, path ) ) {
+			filterChain.doFilter( request, response );
+			return;
+		}
+
+		if ( fingerprintedResourcesEnabled && matchesAny( fingerprintedPaths, path ) ) {
+			Matcher fingerprint = FINGERPRINT.matcher( request.getRequestURI() );
+			if ( fingerprint.find() ) {
+				String etag = "W/\"" + fingerprint.group( 1 ) + "\"";
+				if ( matches( request, etag ) ) {
+					filterChain.doFilter( new HeadRequestWrapper( request ), new NotModifiedResponseWrapper( response ) );
+					int status = response.getStatus();
+					if ( ( status == HttpServletResponse.SC_OK || status == HttpServletResponse.SC_NOT_MODIFIED ) && !response.isCommitted() ) {
+						response.setHeader( HEADER_ETAG, etag );
+						response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+					}
+				} else {
+					filterChain.doFilter( request, new FingerprintedResponseWrapper( response, etag ) );
+				}
+				return;
+			}
+		}
+
+		DigestingResponseWrapper wrapper = new DigestingResponseWrapper( request, response );
+		try {
+			filterChain.doFilter( request, wrapper );
+		} finally {
+			if ( isAsyncStarted( request ) ) {
+				// the rest is written by another thread, when this request is long gone
+				wrapper.stream();
+			} else {
+				wrapper.complete( request );
+			}
+		}
+	}
+
+	private boolean matchesAny( List<String> patterns, String path ) {
+		for ( String pattern : patterns ) {
+			if ( pathMatcher.match( pattern, path ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matches( HttpServletRequest request, String etag ) {
+		String ifNoneMatch = request.getHeader( HEADER_IF_NONE_MATCH );
+		if ( ifNoneMatch == null ) {
+			return false;
+		}
+		// the weak comparison of If-None-Match
+		String opaqueTag = etag.startsWith( "W/" ) ? etag.substring( 2 ) : etag;
+		for ( String candidate : StringUtils.commaDelimitedListToStringArray( ifNoneMatch ) ) {
+			candidate = candidate.trim();
+			if ( candidate.startsWith( "W/" ) ) {
+				candidate = candidate.substring( 2 );
+			}
+			if ( candidate.equals( opaqueTag ) || candidate.equals( "*" ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class HeadRequestWrapper extends HttpServletRequestWrapper {
+
+		HeadRequestWrapper( HttpServletRequest request ) {
+			super( request );
+		}
+
+		@Override
+		public String getMethod() {
+			return "HEAD";
+		}
+	}
+
+	/**
+	 * Keeps the headers of a HEAD response that has to become a 304 from describing a body: the response of a found resource
+	 * stays a 200 with neither length nor range until the filter turns it into a 304. Errors go through.
+	 */
+	private static class NotModifiedResponseWrapper extends HttpServletResponseWrapper {
+
+		NotModifiedResponseWrapper( HttpServletResponse response ) {
+			super( response );
+		}
+
+		@Override
+		public void setStatus( int sc ) {
+			if ( sc != SC_PARTIAL_CONTENT ) {
+				super.setStatus( sc );
+			}
+		}
+
+		@Override
+		public void setContentLength( int len ) {}
+
+		@Override
+		public void setContentLengthLong( long len ) {}
+
+		@Override
+		public void setHeader( String name, String value ) {
+			if ( !isBodyHeader( name ) ) {
+				super.setHeader( name, value );
+			}
+		}
+
+		@Override
+		public void addHeader( String name, String value ) {
+			if ( !isBodyHeader( name ) ) {
+				super.addHeader( name, value );
+			}
+		}
+
+		private boolean isBodyHeader( String name ) {
+			return "Content-Length".equalsIgnoreCase( name ) || "Content-Range".equalsIgnoreCase( name );
+		}
+	}
+
+	/**
+	 * Sets the ETag right before a successful response is committed, so the resources that aren't found don't get one
+	 */
+	private static class FingerprintedResponseWrapper extends HttpServletResponseWrapper {
+
+		private final String etag;
+
+		private boolean etagAdded;
+
+		FingerprintedResponseWrapper( HttpServletResponse response, String etag ) {
+			super( response );
+			this.etag = etag;
+		}
+
+		private void addEtag( int status ) {
+			if ( !etagAdded && ( status == SC_OK || status == SC_NOT_MODIFIED ) ) {
+				etagAdded = true;
+				setHeader( HEADER_ETAG, etag );
+			}
+		}
+
+		@Override
+		public void setStatus( int sc ) {
+			addEtag( sc );
+			super.setStatus( sc );
+		}
+
+		@Override
+		public void setContentLength( int len ) {
+			addEtag( getStatus() );
+			super.setContentLength( len );
+		}
+
+		@Override
+		public void setContentLengthLong( long len ) {
+			addEtag( getStatus() );
+			super.setContentLengthLong( len );
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			addEtag( getStatus() );
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			addEtag( getStatus() );
+			return super.getWriter();
+		}
+	}
+
+	/**
+	 * Holds back and digests the body while it's small enough to get an ETag, and streams it out otherwise. Only ever uses
+	 * the output stream of the wrapped response, the writer handed out writes to it in the response encoding.
+	 */
+	private class DigestingResponseWrapper extends HttpServletResponseWrapper {
+
+		private final HttpServletRequest request;
+
+		private final FastByteArrayOutputStream buffer = new FastByteArrayOutputStream( 1024 );
+
+		private final MessageDigest digest;
+
+		private boolean streaming;
+
+		/**
+		 * Set while the body is held back, e.g. by handlers using sendfile that write no body at all
+		 */
+		private long contentLength = -1;
+
+		private ServletOutputStream outputStream;
+
+		private PrintWriter writer;
+
+		DigestingResponseWrapper( HttpServletRequest request, HttpServletResponse response ) {
+			super( response );
+			this.request = request;
+			try {
+				this.digest = MessageDigest.getInstance( "MD5" );
+			} catch ( NoSuchAlgorithmException e ) {
+				throw new IllegalStateException( "MD5 is not supported", e );
+			}
+		}
+
+		/**
+		 * Writes what was held back and lets the rest of the body through
+		 */
+		void stream() throws IOException {
+			if ( streaming ) {
+				return;
+			}
+			streaming = true;
+			if ( contentLength >= 0 ) {
+				super.setContentLengthLong( contentLength );
+			}
+			if ( buffer.size() > 0 ) {
+				buffer.writeTo( getResponse().getOutputStream() );
+				buffer.reset();
+			}
+		}
+
+		void complete( HttpServletRequest request ) throws IOException {
+			if ( writer != null ) {
+				writer.flush();
+			}
+			if ( streaming ) {
+				return;
+			}
+
+			HttpServletResponse response = (HttpServletResponse) getResponse();
+			if ( response.getStatus() == SC_OK && buffer.size() > 0 && !response.containsHeader( HEADER_ETAG ) && !isNoStore( response ) ) {
+				String etag = "\"0" + BaseEncoding.base16().lowerCase().encode( digest.digest() ) + "\"";
+				response.setHeader( HEADER_ETAG, etag );
+				if ( matches( request, etag ) ) {
+					response.setStatus( SC_NOT_MODIFIED );
+					return;
+				}
+			}
+			if ( buffer.size() > 0 ) {
+				response.setContentLength( buffer.size() );
+				buffer.writeTo( response.getOutputStream() );
+			} else if ( contentLength >= 0 ) {
+				response.setContentLengthLong( contentLength );
+			}
+		}
+
+		private boolean isNoStore( HttpServletResponse response ) {
+			String cacheControl = response.getHeader( HEADER_CACHE_CONTROL );
+			return cacheControl != null && cacheControl.contains( "no-store" );
+		}
+
+		private void write( byte[] b, int off, int len ) throws IOException {
+			if ( !streaming && ( buffer.size() + len > maxBufferSize || isStreamed() ) ) {
+				stream();
+			}
+			if ( streaming ) {
+				getResponse().getOutputStream().write( b, off, len );
+			} else {
+				buffer.write( b, off, len );
+				digest.update( b, off, len );
+			}
+		}
+
+		@Override
+		public void setStatus( int sc ) {
+			super.setStatus( sc );
+			if ( sc != SC_OK ) {
+				streamQuietly();
+			}
+		}
+
+		@Override
+		public void sendError( int sc ) throws IOException {
+			stream();
+			super.sendError( sc );
+		}
+
+		@Override
+		public void sendError( int sc, String msg ) throws IOException {
+			stream();
+			super.sendError( sc, msg );
+		}
+
+		@Override
+		public void sendRedirect( String location ) throws IOException {
+			stream();
+			super.sendRedirect( location );
+		}
+
+		@Override
+		public void setContentLength( int len ) {
+			setContentLengthLong( len );
+		}
+
+		@Override
+		public void setContentLengthLong( long len ) {
+			if ( !streaming && ( len > maxBufferSize || isStreamed() ) ) {
+				streamQuietly();
+			}
+			if ( streaming ) {
+				super.setContentLengthLong( len );
+			} else {
+				// set when complete, from the buffer size if there is a body
+				contentLength = len;
+			}
+		}
+
+		private boolean isStreamed() {
+			return request.getAttribute( STREAMED_ATTRIBUTE ) != null;
+		}
+
+		private void streamQuietly() {
+			try {
+				stream();
+			} catch ( IOException e ) {
+				throw new IllegalStateException( "Could not write the response", e );
+			}
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if ( writer != null ) {
+				writer.flush();
+			}
+			if ( streaming ) {
+				super.flushBuffer();
+			}
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			contentLength = -1;
+			buffer.reset();
+			digest.reset();
+		}
+
+		@Override
+		public void resetBuffer() {
+			super.resetBuffer();
+			buffer.reset();
+			digest.reset();
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if ( outputStream == null ) {
+				outputStream = new ServletOutputStream() {
+
+					@Override
+					public void write( int b ) throws IOException {
+						DigestingResponseWrapper.this.write( new byte[] { (byte) b }, 0, 1 );
+					}
+
+					@Override
+					public void write( byte[] b, int off, int len ) throws IOException {
+						DigestingResponseWrapper.this.write( b, off, len );
+					}
+
+					@Override
+					public void flush() throws IOException {
+						if ( streaming ) {
+							getResponse().getOutputStream().flush();
+						}
+					}
+
+					@Override
+					public boolean isReady() {
+						return true;
+					}
+
+					@Override
+					public void setWriteListener( WriteListener writeListener ) {
+						throw new UnsupportedOperationException( "Non-blocking writes are not supported" );
+					}
+				};
+			}
+			return outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if ( writer == null ) {
+				writer = new PrintWriter( new OutputStreamWriter( getOutputStream(), getCharacterEncoding() ) );
+			}
+			return writer;
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled( boolean enabled ) {
+		this.enabled = enabled;
+	}
+
+	public int getMaxBufferSize() {
+		return maxBufferSize;
+	}
+
+	public void setMaxBufferSize( int maxBufferSize ) {
+		this.maxBufferSize = maxBufferSize;
+	}
+
+	public List<String> getExcludedPaths() {
+		return excludedPaths;
+	}
+
+	public void setExcludedPaths( List<String> excludedPaths ) {
+		this.excludedPaths = excludedPaths;
+	}
+
+	public List<String> getFingerprintedPaths() {
+		return fingerprintedPaths;
+	}
+
+	public void setFingerprintedPaths( List<String> fingerprintedPaths ) {
+		this.fingerprintedPaths = fingerprintedPaths;
+	}
+}
@@ -14,6 +14,9 @@ import org.hibernate.validator.constraints.NotEmpty;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.validation.annotation.Validated;
 
 import com.edlogics.users.domain.User;
@@ -52,4 +55,15 @@ public interface UserRepository extends JpaRepository<User, Long> {
 	@EntityGraph(value = "User.roles", type = EntityGraphType.LOAD)
 	User findByEmailIgnoreCase( @NotEmpty String email );
 
+	/**
+	 * Locks the account of a user without loading it. Being a bulk update this doesn't create an audit revision.
+	 *
+	 * @param email
+	 * @param loginAttempts
+	 * @return the number of updated users
+	 */
+	@Modifying
+	@Query("update User u set u.accountNonLocked = false, u.loginAttempts = :loginAttempts where lower(u.email) = lower(:email)")
+	int lockByEmail( @Param("email") String email, @Param("loginAttempts") int loginAttempts );
+
 }
\ No newline at end of file
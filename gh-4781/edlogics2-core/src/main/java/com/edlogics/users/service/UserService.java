@@ -66,6 +66,14 @@ public interface UserService {
 	 */
 	User getUserByEmail( @NotEmpty String email );
 
+	/**
+	 * Persists the lock of a user's account after too many failed logins.
+	 *
+	 * @param email
+	 * @param loginAttempts the failed attempts that led to the lock
+	 */
+	void lockUser( @NotEmpty String email, int loginAttempts );
+
 	/**
 	 * Verify the encoded password obtained from storage matches the submitted raw password after it too is encoded.
 	 * Returns true if the passwords match, false if they do not.
@@ -77,4 +85,14 @@ public interface UserService {
 	 */
 	boolean doPasswordsMatch( @NotNull String rawPassword, @NotNull String encodedPassword );
 
+	/**
+	 * Re-encodes the password of the user if it was hashed with a different cost than the one currently configured.
+	 * The user isn't saved.
+	 *
+	 * @param user the user that just logged in with the raw password
+	 * @param rawPassword the verified raw password
+	 * @return true if the password of the user was changed
+	 */
+	boolean upgradePasswordEncoding( @NotNull User user, @NotNull String rawPassword );
+
 }
\ No newline at end of file
@@ -17,10 +17,12 @@ import org.springframework.context.MessageSource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.edlogics.authentication.PasswordVerifier;
+import com.edlogics.authentication.UserDetailsCache;
 import com.edlogics.authentication.repository.RoleRepository;
 import com.edlogics.authentication.repository.UserRoleRepository;
 import com.edlogics.config.ApplicationSettings;
@@ -41,8 +43,8 @@ public class UserServiceImpl implements UserService {
 	@Resource
 	UserRoleRepository userRoleRepository;
 
-	@Resource(name = "passwordEncoder")
-	private PasswordEncoder passwordEncoder;
+	@Resource
+	private PasswordVerifier passwordVerifier;
 
 	@Resource
 	private RoleRepository roleRepository;
@@ -53,6 +55,9 @@ public class UserServiceImpl implements UserService {
 	@Autowired
 	ApplicationSettings applicationSettings;
 
+	@Autowired
+	private UserDetailsCache userDetailsCache;
+
 	@Override
 	public List<User> getAllUsers() {
 		return userRepository.findAll();
@@ -72,6 +77,7 @@ public class UserServiceImpl implements UserService {
 	@Override
 	public void saveUser( User user ) {
 		userRepository.save( user );
+		userDetailsCache.evict( user.getEmail() );
 	}
 
 	@Override
@@ -80,8 +86,28 @@ public class UserServiceImpl implements UserService {
 	}
 
 	@Override
+	public void lockUser( String email, int loginAttempts ) {
+		userRepository.lockByEmail( email, loginAttempts );
+		userDetailsCache.evict( email );
+	}
+
+	/**
+	 * Not transactional, the wait for the {@link PasswordVerifier} must not hold a database connection.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public boolean doPasswordsMatch( String rawPassword, String encodedPassword ) {
-		return this.passwordEncoder.matches( rawPassword, encodedPassword );
+		return this.passwordVerifier.matches( rawPassword, encodedPassword );
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public boolean upgradePasswordEncoding( User user, String rawPassword ) {
+		if ( !this.passwordVerifier.needsRehash( user.getPassword() ) ) {
+			return false;
+		}
+		user.setPassword( this.passwordVerifier.encode( rawPassword ) );
+		return true;
 	}
 
 }
\ No newline at end of file
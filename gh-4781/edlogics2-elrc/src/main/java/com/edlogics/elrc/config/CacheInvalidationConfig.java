@@ -0,0 +1,97 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.edlogics.common.cache.CacheInvalidationBus;
+import com.edlogics.common.cache.DatabaseCacheInvalidationTransport;
+import com.edlogics.common.cache.SocketCacheInvalidationTransport;
+import com.edlogics.common.cache.repository.CacheInvalidationMessageRepository;
+import com.edlogics.common.hibernate.CacheInvalidationEventListener;
+import com.edlogics.common.hibernate.CacheKeyFactory;
+
+/**
+ * Publishes the cache changes of this node to the others, see {@link CacheInvalidationBus}. The transport is chosen with
+ * app.cache.invalidation.transport, database (the default) or socket.
+ *
+ * @author Christopher Savory
+ *
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.cache.invalidation", name = "enabled", havingValue = "true")
+public class CacheInvalidationConfig {
+
+	@Autowired
+	private EntityManagerFactory emf;
+
+	@Autowired
+	private CacheInvalidationBus cacheInvalidationBus;
+
+	@PostConstruct
+	public void registerHibernateListener() {
+		CacheInvalidationEventListener listener = new CacheInvalidationEventListener( cacheInvalidationBus );
+		SessionFactoryImplementor sessionFactory = emf.unwrap( SessionFactoryImplementor.class );
+		EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService( EventListenerRegistry.class );
+		registry.appendListeners( EventType.POST_UPDATE, listener );
+		registry.appendListeners( EventType.POST_DELETE, listener );
+		registry.appendListeners( EventType.POST_COLLECTION_UPDATE, listener );
+		registry.appendListeners( EventType.POST_COLLECTION_REMOVE, listener );
+		registry.appendListeners( EventType.POST_COLLECTION_RECREATE, listener );
+		CacheKeyFactory.registerAll( sessionFactory, cacheInvalidationBus );
+	}
+
+	@Configuration
+	@ConditionalOnProperty(prefix = "app.cache.invalidation", name = "transport", havingValue = "database", matchIfMissing = true)
+	static class DatabaseTransportConfig {
+
+		@Value("${app.cache.invalidation.database.retention-seconds:300}")
+		private long retentionSeconds;
+
+		@Value("${app.cache.invalidation.database.overlap-seconds:30}")
+		private long overlapSeconds;
+
+		@Bean
+		public DatabaseCacheInvalidationTransport databaseCacheInvalidationTransport( CacheInvalidationMessageRepository repository ) {
+			return new DatabaseCacheInvalidationTransport( repository, retentionSeconds, overlapSeconds );
+		}
+	}
+
+	@Configuration
+	@ConditionalOnProperty(prefix = "app.cache.invalidation", name = "transport", havingValue = "socket")
+	static class SocketTransportConfig {
+
+		@Value("${app.cache.invalidation.socket.bind-address:127.0.0.1}")
+		private String bindAddress;
+
+		@Value("${app.cache.invalidation.socket.port:4446}")
+		private int port;
+
+		@Value("${app.cache.invalidation.socket.peers:}")
+		private String peers;
+
+		@Value("${app.cache.invalidation.socket.secret:}")
+		private String secret;
+
+		@Bean
+		public SocketCacheInvalidationTransport socketCacheInvalidationTransport() {
+			return new SocketCacheInvalidationTransport( bindAddress, port, peers, secret );
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurerSupport;
+import org.springframework.cache.interceptor.CacheOperation;
+import org.springframework.cache.interceptor.CacheOperationSource;
+import org.springframework.cache.interceptor.CacheableOperation;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.Ordered;
+
+import com.edlogics.common.cache.CacheLoadingInterceptor;
+import com.edlogics.common.cache.CacheLoadingStatistics;
+import com.edlogics.common.cache.SingleFlightCacheManager;
+
+/**
+ * Makes the @Cacheable caches load every missing key once, however many requests miss it at the same time, and refresh hot
+ * entries ahead of their expiry. See {@link com.edlogics.common.cache.SingleFlightCache}.
+ * <p/>
+ * Cache configuration is created before the configuration properties are bound, hence the @Value settings, and the
+ * dependencies are lazy so they are still created (and bound) the usual way.
+ *
+ * @author Christopher Savory
+ *
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.cache.loading", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CacheLoadingConfig extends CachingConfigurerSupport {
+
+	/**
+	 * The Ehcache backed manager Spring Boot configures from ehcache.xml
+	 */
+	@Lazy
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Lazy
+	@Autowired
+	private CacheLoadingStatistics statistics;
+
+	@Lazy
+	@Autowired
+	@Qualifier("taskExecutor")
+	private Executor taskExecutor;
+
+	@Value("${app.cache.loading.wait-timeout-millis:30000}")
+	private long waitTimeoutMillis;
+
+	@Value("${app.cache.loading.refresh-ahead-ratio:0.8}")
+	private double refreshAheadRatio;
+
+	@Value("${app.cache.loading.refresh-ahead-min-hits:2}")
+	private long refreshAheadMinHits;
+
+	@Override
+	public CacheManager cacheManager() {
+		return new SingleFlightCacheManager( cacheManager, waitTimeoutMillis, refreshAheadRatio, refreshAheadMinHits, statistics );
+	}
+
+	/**
+	 * Applies the {@link CacheLoadingInterceptor} to every method with a @Cacheable operation, outside of the cache
+	 * interceptor
+	 */
+	@Bean
+	public Advisor cacheLoadingAdvisor( CacheOperationSource cacheOperationSource ) {
+		DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor( new StaticMethodMatcherPointcut() {
+
+			@Override
+			public boolean matches( Method method, Class<?> targetClass ) {
+				Collection<CacheOperation> operations = cacheOperationSource.getCacheOperations( method, targetClass );
+				if ( operations != null ) {
+					for ( CacheOperation operation : operations ) {
+						if ( operation instanceof CacheableOperation ) {
+							return true;
+						}
+					}
+				}
+				return false;
+			}
+		}, new CacheLoadingInterceptor( taskExecutor, statistics ) );
+		advisor.setOrder( Ordered.LOWEST_PRECEDENCE - 10 );
+		return advisor;
+	}
+}
@@ -11,36 +11,67 @@ package com.edlogics.elrc.config;
 import static com.google.common.base.CaseFormat.LOWER_UNDERSCORE;
 import static com.google.common.base.CaseFormat.UPPER_CAMEL;
 
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
 
 import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.HttpServletResponse;
 
 import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.statistics.StatisticsGateway;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.SessionFactory;
+import org.hibernate.cache.ehcache.internal.regions.EhcacheTransactionalDataRegion;
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.cache.spi.Region;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.stat.EntityStatistics;
 import org.hibernate.stat.QueryStatistics;
 import org.hibernate.stat.SecondLevelCacheStatistics;
 import org.hibernate.stat.Statistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.actuate.endpoint.Endpoint;
 import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.endpoint.mvc.MvcEndpoint;
 import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.util.ReflectionUtils;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import com.edlogics.authentication.PasswordVerifier;
+import com.edlogics.authentication.UserDetailsCache;
+import com.edlogics.common.cache.CacheInvalidationBus;
+import com.edlogics.common.cache.CacheLoadingStatistics;
+import com.edlogics.common.hibernate.LatencyRecordingStatistics;
+import com.edlogics.elrc.config.resource.CachingResourceUrlProvider;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 
 /**
  * @author Christopher Savory
@@ -53,12 +84,33 @@ public class MetricsConfig {
 	private EntityManagerFactory emf;
 	@Autowired
 	private CacheManager cacheManager;
+	@Autowired
+	private UserDetailsCache userDetailsCache;
+	@Autowired
+	private PasswordVerifier passwordVerifier;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private CacheLoadingStatistics cacheLoadingStatistics;
+	@Autowired
+	private CacheInvalidationBus cacheInvalidationBus;
+	@Autowired
+	private ResourceUrlProvider resourceUrlProvider;
 	@Value("${endpoints.metrics-hibernate-queries.enabled}")
 	private boolean queriesMetricsEnabled;
 	@Value("${endpoints.metrics-hibernate-entities.enabled}")
 	private boolean entitiesMetricsEnabled;
 	@Value("${endpoints.metrics-hibernate-second-level-cache.enabled}")
 	private boolean secondLevelCacheMetricsEnabled;
+	@Value("${endpoints.metrics-hibernate-queries.top:20}")
+	private int topQueries;
+	@Value("${endpoints.metrics-hibernate.window-intervals:6}")
+	private int windowIntervals;
+
+	/**
+	 * Query, entity and region names formatted for use in metric names
+	 */
+	private final Cache<String, String> formattedNames = CacheBuilder.newBuilder().maximumSize( 10000 ).build();
 
 	@Bean
 	@ConditionalOnProperty(prefix = "endpoints.metrics-hibernate", name = "enabled", havingValue = "true")
@@ -72,6 +124,36 @@ public class MetricsConfig {
 		return new EhCachePublicMetrics();
 	}
 
+	@Bean
+	@ConditionalOnProperty(prefix = "endpoints.metrics-user-details-cache", name = "enabled", havingValue = "true")
+	public UserDetailsCachePublicMetrics userDetailsCachePublicMetrics() {
+		return new UserDetailsCachePublicMetrics();
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "endpoints.metrics-password-verification", name = "enabled", havingValue = "true")
+	public PasswordVerifierPublicMetrics passwordVerifierPublicMetrics() {
+		return new PasswordVerifierPublicMetrics();
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "endpoints.metrics-cache-loading", name = "enabled", havingValue = "true")
+	public CacheLoadingPublicMetrics cacheLoadingPublicMetrics() {
+		return new CacheLoadingPublicMetrics();
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "app.cache.invalidation", name = "enabled", havingValue = "true")
+	public CacheInvalidationPublicMetrics cacheInvalidationPublicMetrics() {
+		return new CacheInvalidationPublicMetrics();
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "endpoints.metrics-resource-url-cache", name = "enabled", havingValue = "true")
+	public ResourceUrlCachePublicMetrics resourceUrlCachePublicMetrics() {
+		return new ResourceUrlCachePublicMetrics();
+	}
+
 	@Bean
 	public CacheContentsEndpoint cacheEntriesEndpoint() {
 		return new CacheContentsEndpoint();
@@ -80,52 +162,119 @@ public class MetricsConfig {
 	abstract class AbstractPublicMetrics implements PublicMetrics {
 
 		protected String formatString( String value ) {
-			//condense all the whitespace to a single space, then with an underscore
-			value = value.replaceAll( "[\\s]+", " " ).replace( " ", "_" );
+			String formatted = formattedNames.getIfPresent( value );
+			if ( formatted == null ) {
+				//condense all the whitespace to a single space, then with an underscore
+				String[] values = value.replaceAll( "[\\s]+", " " ).replace( " ", "_" ).split( "\\." );
 
-			String[] values = value.split( "\\." );
+				for ( int i = 0; i < values.length; i++ ) {
+					values[i] = UPPER_CAMEL.to( LOWER_UNDERSCORE, values[i] );
+				}
 
-			for ( int i = 0; i < values.length; i++ ) {
-				values[i] = UPPER_CAMEL.to( LOWER_UNDERSCORE, values[i] );
+				formatted = StringUtils.join( values, '_' ) + ".";
+				formattedNames.put( value, formatted );
 			}
-
-			return StringUtils.join( values, '_' ) + ".";
+			return formatted;
 		}
 
 		protected void addMetrics( List<Metric<?>> metrics, Object statistics, String prefix ) {
-			Method[] methods = ReflectionUtils.getAllDeclaredMethods( statistics.getClass() );
-			for ( Method method : methods ) {
-				if ( StringUtils.startsWithAny( method.getName(), "get", "cache", "local" ) ) {
-					String property = ( prefix != null ? prefix.toLowerCase() : "" ) + UPPER_CAMEL.to( LOWER_UNDERSCORE, method.getName().substring( method.getName().startsWith( "get" ) ? 3 : 5 ) );
-					if ( method.getReturnType() == long.class || method.getReturnType() == int.class ) {
-						Number value = (Number) ReflectionUtils.invokeMethod( method, statistics );
-						metrics.add( new Metric<Long>( property, value.longValue() ) );
-					} else if ( method.getReturnType() == double.class || method.getReturnType() == float.class ) {
-						Number value = (Number) ReflectionUtils.invokeMethod( method, statistics );
-						metrics.add( new Metric<Double>( property, value.doubleValue() ) );
-					}
-				}
-			}
+			StatisticsAccessors.forClass( statistics.getClass() ).addMetrics( metrics, statistics, prefix );
 		}
 	}
 
-	class HibernatePublicMetrics extends AbstractPublicMetrics {
+	/**
+	 * Metrics that are expensive to collect. They are sampled on the scheduler at a fixed delay into an immutable snapshot,
+	 * and a scrape just returns the latest snapshot plus its age.
+	 */
+	abstract class SampledPublicMetrics extends AbstractPublicMetrics {
+
+		private volatile Snapshot snapshot;
+
+		/**
+		 * @return the prefix of the snapshot age and sample time metrics
+		 */
+		protected abstract String getName();
+
+		protected abstract List<Metric<?>> sample();
+
+		@Scheduled(fixedDelayString = "${endpoints.metrics-sampling.interval:10000}")
+		public synchronized void refresh() {
+			long start = System.nanoTime();
+			List<Metric<?>> metrics = sample();
+			double sampleMillis = ( System.nanoTime() - start ) / 1e6;
+			metrics.add( new Metric<Double>( getName() + ".snapshot.sample_time_ms", sampleMillis ) );
+			this.snapshot = new Snapshot( ImmutableList.copyOf( metrics ), System.currentTimeMillis() );
+		}
 
 		@Override
 		public Collection<Metric<?>> metrics() {
+			Snapshot current = this.snapshot;
+			if ( current == null ) {
+				refresh();
+				current = this.snapshot;
+			}
+			Metric<Long> age = new Metric<Long>( getName() + ".snapshot.age_ms", System.currentTimeMillis() - current.timestamp );
+			List<Metric<?>> metrics = current.metrics;
+			return new AbstractCollection<Metric<?>>() {
+
+				@Override
+				public Iterator<Metric<?>> iterator() {
+					return Iterators.concat( metrics.iterator(), Iterators.<Metric<?>> singletonIterator( age ) );
+				}
+
+				@Override
+				public int size() {
+					return metrics.size() + 1;
+				}
+			};
+		}
+	}
+
+	static class Snapshot {
+
+		final List<Metric<?>> metrics;
+
+		final long timestamp;
+
+		Snapshot( List<Metric<?>> metrics, long timestamp ) {
+			this.metrics = metrics;
+			this.timestamp = timestamp;
+		}
+	}
+
+	class HibernatePublicMetrics extends SampledPublicMetrics {
+
+		private final StatisticsWindow window = new StatisticsWindow( windowIntervals );
+
+		@Override
+		protected String getName() {
+			return "hibernate";
+		}
+
+		@Override
+		protected List<Metric<?>> sample() {
+			List<Metric<?>> metrics = new ArrayList<>();
 			SessionFactory sessionFactory = emf.unwrap( SessionFactory.class );
 			if ( sessionFactory != null ) {
 				Statistics cacheStatistics = sessionFactory.getStatistics();
 				if ( cacheStatistics != null ) {
-					List<Metric<?>> metrics = new ArrayList<>();
 					addMetrics( metrics, cacheStatistics, null );
 
+					StatisticsWindow.Sample sample = new StatisticsWindow.Sample()
+							.rate( "entity_load", cacheStatistics.getEntityLoadCount() )
+							.rate( "entity_fetch", cacheStatistics.getEntityFetchCount() )
+							.rate( "collection_load", cacheStatistics.getCollectionLoadCount() )
+							.rate( "query_execution", cacheStatistics.getQueryExecutionCount() )
+							.rate( "prepare_statement", cacheStatistics.getPrepareStatementCount() )
+							.rate( "transaction", cacheStatistics.getTransactionCount() )
+							.ratio( "second_level_cache_", cacheStatistics.getSecondLevelCacheHitCount(), cacheStatistics.getSecondLevelCacheMissCount() )
+							.ratio( "query_cache_", cacheStatistics.getQueryCacheHitCount(), cacheStatistics.getQueryCacheMissCount() );
+					if ( cacheStatistics instanceof LatencyRecordingStatistics ) {
+						sample.queryExecutionTimes( ( (LatencyRecordingStatistics) cacheStatistics ).getQueryExecutionTimes().counts() );
+					}
+
 					if ( queriesMetricsEnabled ) {
-						String[] queries = cacheStatistics.getQueries();
-						for ( String query : queries ) {
-							QueryStatistics queryStatistics = sessionFactory.getStatistics().getQueryStatistics( query );
-							addMetrics( metrics, queryStatistics, "hibernate.queries." + formatString( query.toLowerCase() ) );
-						}
+						addQueryMetrics( metrics, cacheStatistics );
 					}
 					if ( entitiesMetricsEnabled ) {
 						String[] entityNames = cacheStatistics.getEntityNames();
@@ -139,74 +288,366 @@ public class MetricsConfig {
 						for ( String regionName : secondLevelCacheRegionNames ) {
 							SecondLevelCacheStatistics secondLevelCacheStatistics = sessionFactory.getStatistics().getSecondLevelCacheStatistics( regionName );
 							addMetrics( metrics, secondLevelCacheStatistics, "hibernate.second_level_caches." + formatString( regionName ) );
+							sample.ratio( "second_level_caches." + formatString( regionName ), secondLevelCacheStatistics.getHitCount(), secondLevelCacheStatistics.getMissCount() );
 						}
 					}
-					return metrics;
+
+					window.add( sample );
+					window.addMetrics( metrics, "hibernate." );
+				}
+			}
+			return metrics;
+		}
+
+		/**
+		 * Adds the full statistics of the endpoints.metrics-hibernate-queries.top most expensive queries, by total execution time, and sums up the
+		 * rest into hibernate.queries.other, so the number of metrics doesn't grow with the number of distinct queries.
+		 */
+		private void addQueryMetrics( List<Metric<?>> metrics, Statistics cacheStatistics ) {
+			PriorityQueue<QueryCost> top = new PriorityQueue<>( topQueries + 1 );
+			long otherQueries = 0;
+			long otherExecutionCount = 0;
+			long otherExecutionTime = 0;
+			for ( String query : cacheStatistics.getQueries() ) {
+				QueryCost cost = new QueryCost( query, cacheStatistics.getQueryStatistics( query ) );
+				top.add( cost );
+				if ( top.size() > topQueries ) {
+					QueryCost evicted = top.poll();
+					otherQueries++;
+					otherExecutionCount += evicted.statistics.getExecutionCount();
+					otherExecutionTime += evicted.totalTime;
 				}
 			}
-			return Collections.emptySet();
+			for ( QueryCost cost : top ) {
+				addMetrics( metrics, cost.statistics, "hibernate.queries." + formatString( cost.query.toLowerCase() ) );
+			}
+			metrics.add( new Metric<Long>( "hibernate.queries.other.query_count", otherQueries ) );
+			metrics.add( new Metric<Long>( "hibernate.queries.other.execution_count", otherExecutionCount ) );
+			metrics.add( new Metric<Long>( "hibernate.queries.other.execution_total_time", otherExecutionTime ) );
 		}
 	}
 
-	class EhCachePublicMetrics extends AbstractPublicMetrics {
+	static class QueryCost implements Comparable<QueryCost> {
+
+		final String query;
+
+		final QueryStatistics statistics;
+
+		final long totalTime;
+
+		QueryCost( String query, QueryStatistics statistics ) {
+			this.query = query;
+			this.statistics = statistics;
+			this.totalTime = statistics.getExecutionCount() * statistics.getExecutionAvgTime();
+		}
 
 		@Override
-		public Collection<Metric<?>> metrics() {
+		public int compareTo( QueryCost other ) {
+			return Long.compare( totalTime, other.totalTime );
+		}
+	}
+
+	class EhCachePublicMetrics extends SampledPublicMetrics {
+
+		@Override
+		protected String getName() {
+			return "ehcache";
+		}
+
+		@Override
+		protected List<Metric<?>> sample() {
+			List<Metric<?>> metrics = new ArrayList<>();
 			if ( cacheManager != null ) {
 				Collection<String> cacheNames = cacheManager.getCacheNames();
 				if ( CollectionUtils.isNotEmpty( cacheNames ) ) {
-					List<Metric<?>> metrics = new ArrayList<>();
-
 					for ( String cacheName : cacheNames ) {
 						Ehcache cache = (Ehcache) cacheManager.getCache( cacheName ).getNativeCache();
 						if ( cache != null ) {
-							addMetrics( metrics, cache.getStatistics(), "ehcache." + formatString( cacheName ) );
+							String prefix = "ehcache." + formatString( cacheName );
+							addMetrics( metrics, cache.getStatistics(), prefix );
+
+							// the configured size of each tier, to compare with the local_*_size_in_bytes metrics
+							CacheConfiguration configuration = cache.getCacheConfiguration();
+							metrics.add( new Metric<Long>( prefix + "max_bytes_local_heap", configuration.getMaxBytesLocalHeap() ) );
+							metrics.add( new Metric<Long>( prefix + "max_bytes_local_off_heap", configuration.getMaxBytesLocalOffHeap() ) );
+							metrics.add( new Metric<Long>( prefix + "max_bytes_local_disk", configuration.getMaxBytesLocalDisk() ) );
 						}
 					}
-
-					return metrics;
 				}
 			}
-			return Collections.emptySet();
+			return metrics;
 		}
 	}
 
-	@ConfigurationProperties(prefix = "endpoints.cachecontents", ignoreUnknownFields = false)
-	class CacheContentsEndpoint extends AbstractEndpoint<Map<String, Object>> {
+	class UserDetailsCachePublicMetrics extends AbstractPublicMetrics {
 
-		/**
-		 * Create a new {@link CacheContentsEndpoint} instance.
-		 */
-		public CacheContentsEndpoint() {
-			super( "cachecontents" );
+		@Override
+		public Collection<Metric<?>> metrics() {
+			CacheStats stats = userDetailsCache.stats();
+			List<Metric<?>> metrics = new ArrayList<>();
+			metrics.add( new Metric<Long>( "user_details_cache.hit_count", stats.hitCount() ) );
+			metrics.add( new Metric<Long>( "user_details_cache.miss_count", stats.missCount() ) );
+			metrics.add( new Metric<Double>( "user_details_cache.hit_rate", stats.hitRate() ) );
+			metrics.add( new Metric<Long>( "user_details_cache.eviction_count", stats.evictionCount() ) );
+			metrics.add( new Metric<Long>( "user_details_cache.size", userDetailsCache.size() ) );
+			return metrics;
 		}
+	}
+
+	class PasswordVerifierPublicMetrics extends AbstractPublicMetrics {
 
 		@Override
-		public Map<String, Object> invoke() {
-			Map<String, Object> result = new LinkedHashMap<String, Object>();
+		public Collection<Metric<?>> metrics() {
+			List<Metric<?>> metrics = new ArrayList<>();
+			metrics.add( new Metric<Integer>( "password_verification.queue_depth", passwordVerifier.getQueueDepth() ) );
+			metrics.add( new Metric<Integer>( "password_verification.active_count", passwordVerifier.getActiveCount() ) );
+			metrics.add( new Metric<Long>( "password_verification.hash_count", passwordVerifier.getHashCount() ) );
+			metrics.add( new Metric<Double>( "password_verification.hash_time_avg_ms", passwordVerifier.getAverageHashMillis() ) );
+			metrics.add( new Metric<Double>( "password_verification.hash_time_max_ms", passwordVerifier.getMaxHashMillis() ) );
+			metrics.add( new Metric<Long>( "password_verification.rejected_count", passwordVerifier.getRejectedCount() ) );
+			return metrics;
+		}
+	}
 
-			SessionFactory sessionFactory = emf.unwrap( SessionFactory.class );
-			if ( sessionFactory != null ) {
-				Statistics cacheStatistics = sessionFactory.getStatistics();
-				if ( cacheStatistics != null ) {
+	class CacheLoadingPublicMetrics extends AbstractPublicMetrics {
 
-					String[] secondLevelCacheRegionNames = cacheStatistics.getSecondLevelCacheRegionNames();
-					for ( String regionName : secondLevelCacheRegionNames ) {
-						//Don't try to add the query cache here, will result in a hibernate thowing an error.  The query cache contents are already exposed through /metrics anyways
-						if ( !"org.hibernate.cache.internal.StandardQueryCache".equals( regionName ) && !"shortTimeQueryCache".equals( regionName )
-								&& !"org.hibernate.cache.spi.UpdateTimestampsCache".equals( regionName ) ) {
-							SecondLevelCacheStatistics secondLevelCacheStatistics = sessionFactory.getStatistics().getSecondLevelCacheStatistics( regionName );
-							@SuppressWarnings("rawtypes")
-							Map cacheEntries = secondLevelCacheStatistics.getEntries();
-							for ( Object key : cacheEntries.keySet() ) {
-								result.put( "hibernate.second_level_caches." + regionName + "." + key, cacheEntries.get( key ) );
+		@Override
+		public Collection<Metric<?>> metrics() {
+			List<Metric<?>> metrics = new ArrayList<>();
+			metrics.add( new Metric<Long>( "cache_loading.coalesced_count", cacheLoadingStatistics.getCoalescedCount() ) );
+			metrics.add( new Metric<Long>( "cache_loading.wait_timeout_count", cacheLoadingStatistics.getWaitTimeoutCount() ) );
+			metrics.add( new Metric<Long>( "cache_loading.refresh_count", cacheLoadingStatistics.getRefreshCount() ) );
+			metrics.add( new Metric<Long>( "cache_loading.refresh_failure_count", cacheLoadingStatistics.getRefreshFailureCount() ) );
+			metrics.add( new Metric<Double>( "cache_loading.refresh_time_avg_ms", cacheLoadingStatistics.getAverageRefreshMillis() ) );
+			metrics.add( new Metric<Double>( "cache_loading.refresh_time_max_ms", cacheLoadingStatistics.getMaxRefreshMillis() ) );
+			return metrics;
+		}
+	}
+
+	class CacheInvalidationPublicMetrics extends AbstractPublicMetrics {
+
+		@Override
+		public Collection<Metric<?>> metrics() {
+			List<Metric<?>> metrics = new ArrayList<>();
+			metrics.add( new Metric<Long>( "cache_invalidation.published_batches", cacheInvalidationBus.getPublishedBatches() ) );
+			metrics.add( new Metric<Long>( "cache_invalidation.published_keys", cacheInvalidationBus.getPublishedKeys() ) );
+			metrics.add( new Metric<Long>( "cache_invalidation.publish_failures", cacheInvalidationBus.getPublishFailures() ) );
+			metrics.add( new Metric<Long>( "cache_invalidation.received_batches", cacheInvalidationBus.getReceivedBatches() ) );
+			metrics.add( new Metric<Long>( "cache_invalidation.received_keys", cacheInvalidationBus.getReceivedKeys() ) );
+			return metrics;
+		}
+	}
+
+	class ResourceUrlCachePublicMetrics extends AbstractPublicMetrics {
+
+		@Override
+		public Collection<Metric<?>> metrics() {
+			List<Metric<?>> metrics = new ArrayList<>();
+			if ( resourceUrlProvider instanceof CachingResourceUrlProvider ) {
+				CachingResourceUrlProvider cachingProvider = (CachingResourceUrlProvider) resourceUrlProvider;
+				CacheStats stats = cachingProvider.stats();
+				metrics.add( new Metric<Long>( "resource_url_cache.hit_count", stats.hitCount() ) );
+				metrics.add( new Metric<Long>( "resource_url_cache.miss_count", stats.missCount() ) );
+				metrics.add( new Metric<Double>( "resource_url_cache.hit_rate", stats.hitRate() ) );
+				metrics.add( new Metric<Long>( "resource_url_cache.eviction_count", stats.evictionCount() ) );
+				metrics.add( new Metric<Long>( "resource_url_cache.size", cachingProvider.size() ) );
+			}
+			return metrics;
+		}
+	}
+
+	/**
+	 * Lists the contents of the entity, collection and natural id second level cache regions, at /cachecontents.
+	 * <p/>
+	 * Entries are written to the response as they are read instead of being collected first, and a request only reads up to
+	 * limit of them. Supported parameters:
+	 * <ul>
+	 * <li>region: only regions whose name starts with this</li>
+	 * <li>keyPrefix: only keys whose id starts with this</li>
+	 * <li>limit: the number of entries to return, at most maxLimit</li>
+	 * <li>cursor: the "next" value of the previous page</li>
+	 * <li>summary: only return the number of entries and the estimated size of every region</li>
+	 * </ul>
+	 * The entries of a region are returned in the order of the string form of their ids, and the cursor is the id the next
+	 * page starts at, so entries that stay in the region while it changes are neither skipped nor repeated. Entries added or
+	 * removed while paging may or may not be seen. A page makes one pass over the keys of every region it covers and only
+	 * keeps the keys of the page, nothing is copied or sorted as a whole.
+	 */
+	@ConfigurationProperties(prefix = "endpoints.cachecontents", ignoreUnknownFields = false)
+	class CacheContentsEndpoint implements MvcEndpoint {
+
+		private String path = "/cachecontents";
+
+		private boolean sensitive = true;
+
+		private boolean enabled = true;
+
+		private int maxLimit = 1000;
+
+		@RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+		public void invoke( @RequestParam(required = false) String region,
+				@RequestParam(required = false) String keyPrefix,
+				@RequestParam(defaultValue = "100") int limit,
+				@RequestParam(required = false) String cursor,
+				@RequestParam(defaultValue = "false") boolean summary,
+				HttpServletResponse response ) throws IOException {
+			if ( !enabled ) {
+				response.sendError( HttpServletResponse.SC_NOT_FOUND, "This endpoint is disabled" );
+				return;
+			}
+			int regionIndex = 0;
+			String fromKey = null;
+			if ( StringUtils.isNotEmpty( cursor ) ) {
+				// ids may contain dots themselves
+				String[] position = cursor.split( "\\.", 2 );
+				try {
+					regionIndex = Integer.parseInt( position[0] );
+					fromKey = position[1];
+				} catch ( NumberFormatException | ArrayIndexOutOfBoundsException e ) {
+					response.sendError( HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor: " + cursor );
+					return;
+				}
+			}
+
+			List<String> regionNames = new ArrayList<>();
+			List<Ehcache> caches = new ArrayList<>();
+			for ( Map.Entry<String, Ehcache> entry : findRegions( region ).entrySet() ) {
+				regionNames.add( entry.getKey() );
+				caches.add( entry.getValue() );
+			}
+
+			response.setContentType( MediaType.APPLICATION_JSON_VALUE );
+			JsonGenerator json = objectMapper.getFactory().createGenerator( response.getOutputStream() );
+			json.writeStartObject();
+			if ( summary ) {
+				for ( int i = 0; i < caches.size(); i++ ) {
+					StatisticsGateway statistics = caches.get( i ).getStatistics();
+					json.writeObjectFieldStart( regionNames.get( i ) );
+					json.writeNumberField( "count", caches.get( i ).getSize() );
+					json.writeNumberField( "bytes", statistics.getLocalHeapSizeInBytes() + statistics.getLocalOffHeapSizeInBytes() );
+					json.writeEndObject();
+				}
+			} else {
+				int remaining = Math.max( 0, Math.min( limit, maxLimit ) );
+				String next = null;
+
+				json.writeObjectFieldStart( "entries" );
+				for ( ; regionIndex < caches.size() && next == null; regionIndex++, fromKey = null ) {
+					Ehcache cache = caches.get( regionIndex );
+					boolean inclusive = true;
+					boolean more = true;
+					while ( more && next == null ) {
+						// one more key than needed, it is the cursor of the next page
+						NavigableMap<String, Object> keys = nextKeys( cache, keyPrefix, fromKey, inclusive, remaining + 1 );
+						more = keys.size() == remaining + 1;
+						for ( Map.Entry<String, Object> key : keys.entrySet() ) {
+							if ( remaining == 0 ) {
+								next = regionIndex + "." + key.getKey();
+								break;
+							}
+							// getQuiet doesn't count as a hit or change the eviction order
+							Element element = cache.getQuiet( key.getValue() );
+							if ( element != null ) {
+								json.writeObjectField( "hibernate.second_level_caches." + regionNames.get( regionIndex ) + "." + key.getKey(),
+										element.getObjectValue() );
+								remaining--;
 							}
 						}
+						// entries expired while they were read, continue after them
+						if ( !keys.isEmpty() ) {
+							fromKey = keys.lastKey();
+							inclusive = false;
+						}
+					}
+				}
+				json.writeEndObject();
+				json.writeStringField( "next", next );
+			}
+			json.writeEndObject();
+			json.close();
+		}
+
+		/**
+		 * @return the first count keys of the region from the given id on, by their id, in one pass over the keys
+		 */
+		private NavigableMap<String, Object> nextKeys( Ehcache cache, String keyPrefix, String fromKey, boolean inclusive,
+				int count ) {
+			TreeMap<String, Object> keys = new TreeMap<>();
+			for ( Object key : cache.getKeys() ) {
+				String id = String.valueOf( key instanceof CacheKey ? ( (CacheKey) key ).getKey() : key );
+				if ( keyPrefix != null && !id.startsWith( keyPrefix ) ) {
+					continue;
+				}
+				if ( fromKey != null && ( inclusive ? id.compareTo( fromKey ) < 0 : id.compareTo( fromKey ) <= 0 ) ) {
+					continue;
+				}
+				if ( keys.size() < count ) {
+					keys.put( id, key );
+				} else if ( id.compareTo( keys.lastKey() ) < 0 ) {
+					keys.pollLastEntry();
+					keys.put( id, key );
+				}
+			}
+			return keys;
+		}
+
+		/**
+		 * Only the transactional regions are listed, reading the query cache regions would result in hibernate throwing an
+		 * error. The query cache contents are already exposed through /metrics anyways.
+		 */
+		private Map<String, Ehcache> findRegions( String prefix ) {
+			Map<String, Ehcache> regions = new TreeMap<>();
+			SessionFactoryImplementor sessionFactory = emf.unwrap( SessionFactoryImplementor.class );
+			if ( sessionFactory != null ) {
+				@SuppressWarnings("unchecked")
+				Map<String, Region> allRegions = sessionFactory.getAllSecondLevelCacheRegions();
+				for ( Map.Entry<String, Region> entry : allRegions.entrySet() ) {
+					if ( entry.getValue() instanceof EhcacheTransactionalDataRegion && ( prefix == null || entry.getKey().startsWith( prefix ) ) ) {
+						regions.put( entry.getKey(), ( (EhcacheTransactionalDataRegion) entry.getValue() ).getEhcache() );
 					}
 				}
 			}
+			return regions;
+		}
+
+		@Override
+		public String getPath() {
+			return path;
+		}
 
-			return result;
+		public void setPath( String path ) {
+			this.path = path;
+		}
+
+		@Override
+		public boolean isSensitive() {
+			return sensitive;
+		}
+
+		public void setSensitive( boolean sensitive ) {
+			this.sensitive = sensitive;
+		}
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled( boolean enabled ) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public void setMaxLimit( int maxLimit ) {
+			this.maxLimit = maxLimit;
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public Class<? extends Endpoint> getEndpointType() {
+			return null;
 		}
 	}
 
@@ -0,0 +1,94 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config;
+
+import static com.edlogics.common.http.RequestClassifier.Category.FONT;
+import static com.edlogics.common.http.RequestClassifier.Category.PUBLIC;
+import static com.edlogics.common.http.RequestClassifier.Category.PUBLIC_API;
+import static com.edlogics.common.http.RequestClassifier.Category.STATIC;
+import static com.edlogics.common.http.RequestClassifier.Category.STYLESHEET;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.edlogics.common.http.RequestClassifier;
+
+/**
+ * The paths permitted without authentication, and the kinds of content the filters care about. Everything else is protected,
+ * the paths that need a role are in {@link WebSecurityConfig}. The login and logout pages are permitted by the form login
+ * configuration itself.
+ *
+ * @author Christopher Savory
+ */
+@Configuration
+public class RequestClassifierConfig {
+
+	@Bean
+	public RequestClassifier requestClassifier() {
+		// @formatter:off
+		return RequestClassifier.builder()
+				.path( "/", PUBLIC )
+				.pathAndBelow( "/js", STATIC )
+				.pathAndBelow( "/bower_components", STATIC )
+				.pathAndBelow( "/css", STATIC )
+				.pathAndBelow( "/less", STATIC )
+				.pathAndBelow( "/img", STATIC )
+				.pathAndBelow( "/fonts", STATIC )
+				.pathAndBelow( "/json", STATIC )
+				.pathAndBelow( "/spa-artifacts", STATIC )
+				.pathAndBelow( "/ko-components", STATIC )
+				.pathAndBelow( "/healthscratch", "js", STATIC )
+
+				/* Swagger console */
+				.path( "/configuration/security", PUBLIC_API )
+				.path( "/configuration/ui", PUBLIC_API )
+				.path( "/swagger-resources", PUBLIC_API )
+				.path( "/v2/api-docs", PUBLIC_API )
+				.pathAndBelow( "/webjars", STATIC )
+
+				/* Some API content-driven services don't require any authentication */
+				.pathAndBelow( "/message-service", PUBLIC_API )
+				.pathAndBelow( "/feature-service", PUBLIC_API )
+				.pathAndBelow( "/health-info-service", PUBLIC_API )
+				.pathAndBelow( "/configuration-service", PUBLIC_API )
+				.pathAndBelow( "/user-staging-service", PUBLIC_API )
+				.pathAndBelow( "/activity-service", PUBLIC_API )
+				.pathAndBelow( "/question-service", PUBLIC_API )
+				.path( "/profile-service/avatars", PUBLIC_API )
+				.path( "/health", PUBLIC_API )
+
+				.pathAndBelow( "/email", PUBLIC )
+				.pathAndBelow( "/sign-up", PUBLIC )
+				.pathAndBelow( "/unsubscribe", PUBLIC )
+				.pathAndBelow( "/join", PUBLIC )
+				.pathAndBelow( "/remote-user", PUBLIC )
+				.path( "/j_spring_security_exit_user", PUBLIC ) //Quit impersonation
+				.pathAndBelow( "/registration", PUBLIC )
+				.path( "/account/send-password-reset", PUBLIC )
+				.pathAndBelow( "/account/reset-password", PUBLIC )
+				.pathAndBelow( "/account/register", PUBLIC )
+				.path( "/legal/terms", PUBLIC )
+				.path( "/legal/privacy", PUBLIC )
+				.path( "/help", PUBLIC )
+				.path( "/rss", PUBLIC )
+				.path( "/session-expired", PUBLIC )
+
+				/* Served cross origin from the resource domain */
+				.extension( "ttf", FONT )
+				.extension( "ttc", FONT )
+				.extension( "otf", FONT )
+				.extension( "eot", FONT )
+				.extension( "woff", FONT )
+				.extension( "woff2", FONT )
+				.extension( "css", STYLESHEET )
+				.extension( "less", STYLESHEET )
+				.build();
+		// @formatter:on
+	}
+}
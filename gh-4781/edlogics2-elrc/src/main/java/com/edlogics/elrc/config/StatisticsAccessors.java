@@ -0,0 +1,133 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config;
+
+import static com.google.common.base.CaseFormat.LOWER_UNDERSCORE;
+import static com.google.common.base.CaseFormat.UPPER_CAMEL;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The numeric getters of a statistics class (Hibernate or Ehcache), looked up once per class and turned into method
+ * handles, so collecting metrics doesn't need reflection or name formatting on every scrape.
+ *
+ * @author Christopher Savory
+ */
+final class StatisticsAccessors {
+
+	private static final ConcurrentMap<Class<?>, StatisticsAccessors> CACHE = new ConcurrentHashMap<>();
+
+	private static final MethodType LONG_GETTER = MethodType.methodType( long.class, Object.class );
+
+	private static final MethodType DOUBLE_GETTER = MethodType.methodType( double.class, Object.class );
+
+	private final String[] properties;
+
+	private final MethodHandle[] getters;
+
+	private final boolean[] decimal;
+
+	/**
+	 * There is a prefix per entity, collection, region and query, bounded like the formatted names of the MetricsConfig
+	 */
+	private final Cache<String, String[]> namesByPrefix = CacheBuilder.newBuilder().maximumSize( 1000 ).build();
+
+	private StatisticsAccessors( Class<?> statisticsClass ) {
+		List<String> properties = new ArrayList<>();
+		List<MethodHandle> getters = new ArrayList<>();
+		List<Boolean> decimal = new ArrayList<>();
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		for ( Method method : statisticsClass.getMethods() ) {
+			Class<?> type = method.getReturnType();
+			boolean integral = type == long.class || type == int.class;
+			boolean floating = type == double.class || type == float.class;
+			if ( method.getParameterCount() != 0 || !( integral || floating )
+					|| !StringUtils.startsWithAny( method.getName(), "get", "cache", "local" ) ) {
+				continue;
+			}
+			try {
+				// the implementation class itself may not be public
+				method.setAccessible( true );
+				MethodHandle getter = lookup.unreflect( method ).asType( integral ? LONG_GETTER : DOUBLE_GETTER );
+				properties.add( UPPER_CAMEL.to( LOWER_UNDERSCORE, method.getName().substring( method.getName().startsWith( "get" ) ? 3 : 5 ) ) );
+				getters.add( getter );
+				decimal.add( floating );
+			} catch ( IllegalAccessException | SecurityException e ) {
+				// skip what we can't call, as the reflective version would have failed on it too
+			}
+		}
+		this.properties = properties.toArray( new String[properties.size()] );
+		this.getters = getters.toArray( new MethodHandle[getters.size()] );
+		this.decimal = new boolean[decimal.size()];
+		for ( int i = 0; i < this.decimal.length; i++ ) {
+			this.decimal[i] = decimal.get( i );
+		}
+	}
+
+	static StatisticsAccessors forClass( Class<?> statisticsClass ) {
+		StatisticsAccessors accessors = CACHE.get( statisticsClass );
+		if ( accessors == null ) {
+			accessors = new StatisticsAccessors( statisticsClass );
+			StatisticsAccessors existing = CACHE.putIfAbsent( statisticsClass, accessors );
+			if ( existing != null ) {
+				accessors = existing;
+			}
+		}
+		return accessors;
+	}
+
+	/**
+	 * Adds one metric per getter, named prefix + property.
+	 */
+	void addMetrics( List<Metric<?>> metrics, Object statistics, String prefix ) {
+		String[] names = names( prefix );
+		try {
+			for ( int i = 0; i < getters.length; i++ ) {
+				if ( decimal[i] ) {
+					double value = (double) getters[i].invokeExact( statistics );
+					metrics.add( new Metric<Double>( names[i], value ) );
+				} else {
+					long value = (long) getters[i].invokeExact( statistics );
+					metrics.add( new Metric<Long>( names[i], value ) );
+				}
+			}
+		} catch ( RuntimeException | Error e ) {
+			throw e;
+		} catch ( Throwable e ) {
+			throw new IllegalStateException( "Could not read " + statistics.getClass().getName(), e );
+		}
+	}
+
+	private String[] names( String prefix ) {
+		String key = prefix != null ? prefix : "";
+		String[] names = namesByPrefix.getIfPresent( key );
+		if ( names == null ) {
+			String lowerCasePrefix = key.toLowerCase();
+			names = new String[properties.length];
+			for ( int i = 0; i < names.length; i++ ) {
+				names[i] = lowerCasePrefix + properties[i];
+			}
+			namesByPrefix.put( key, names );
+		}
+		return names;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.edlogics.common.hibernate.LatencyHistogram;
+
+/**
+ * Ring buffer of the last samples of cumulative Hibernate counters. The difference between the newest and the oldest sample
+ * gives rates, hit ratios and query time percentiles over a recent window instead of since startup.
+ * <p/>
+ * Not thread safe, samples are added and read by the metrics sampler only.
+ *
+ * @author Christopher Savory
+ */
+final class StatisticsWindow {
+
+	private final Sample[] ring;
+
+	private int next;
+
+	private int count;
+
+	/**
+	 * @param intervals the number of sampling intervals the window spans
+	 */
+	StatisticsWindow( int intervals ) {
+		this.ring = new Sample[Math.max( 1, intervals ) + 1];
+	}
+
+	void add( Sample sample ) {
+		ring[next] = sample;
+		next = ( next + 1 ) % ring.length;
+		count = Math.min( count + 1, ring.length );
+	}
+
+	/**
+	 * Adds the window metrics: prefix + counter + "_rate" per second for every rate counter, prefix + name + "hit_ratio" for
+	 * every hit ratio, and the query time percentiles.
+	 */
+	void addMetrics( List<Metric<?>> metrics, String prefix ) {
+		if ( count < 2 ) {
+			return;
+		}
+		Sample newest = ring[( next - 1 + ring.length ) % ring.length];
+		Sample oldest = ring[( next - count + ring.length ) % ring.length];
+		double seconds = ( newest.timestamp - oldest.timestamp ) / 1000d;
+		if ( seconds <= 0 ) {
+			return;
+		}
+		metrics.add( new Metric<Double>( prefix + "window_seconds", seconds ) );
+
+		for ( Map.Entry<String, Long> counter : newest.rates.entrySet() ) {
+			long delta = counter.getValue() - oldest.rate( counter.getKey() );
+			metrics.add( new Metric<Double>( prefix + counter.getKey() + "_rate", delta / seconds ) );
+		}
+
+		for ( Map.Entry<String, long[]> hitsAndMisses : newest.ratios.entrySet() ) {
+			long[] previous = oldest.ratio( hitsAndMisses.getKey() );
+			long hits = hitsAndMisses.getValue()[0] - previous[0];
+			long misses = hitsAndMisses.getValue()[1] - previous[1];
+			if ( hits + misses > 0 ) {
+				metrics.add( new Metric<Double>( prefix + hitsAndMisses.getKey() + "hit_ratio", hits / (double) ( hits + misses ) ) );
+			}
+		}
+
+		if ( newest.queryExecutionTimes != null && oldest.queryExecutionTimes != null ) {
+			long[] delta = new long[newest.queryExecutionTimes.length];
+			for ( int i = 0; i < delta.length; i++ ) {
+				delta[i] = newest.queryExecutionTimes[i] - oldest.queryExecutionTimes[i];
+			}
+			metrics.add( new Metric<Long>( prefix + "query_execution_time_p50", LatencyHistogram.percentile( delta, 0.5 ) ) );
+			metrics.add( new Metric<Long>( prefix + "query_execution_time_p99", LatencyHistogram.percentile( delta, 0.99 ) ) );
+		}
+	}
+
+	/**
+	 * Cumulative counters at one point in time
+	 */
+	static class Sample {
+
+		private final long timestamp = System.currentTimeMillis();
+
+		private final Map<String, Long> rates = new LinkedHashMap<>();
+
+		private final Map<String, long[]> ratios = new LinkedHashMap<>();
+
+		private long[] queryExecutionTimes;
+
+		/**
+		 * A counter to report as a per second rate, e.g. entity_load
+		 */
+		Sample rate( String name, long value ) {
+			rates.put( name, value );
+			return this;
+		}
+
+		/**
+		 * A hit and miss counter pair to report as a hit ratio, the name is used as the metric name prefix
+		 */
+		Sample ratio( String name, long hits, long misses ) {
+			ratios.put( name, new long[] { hits, misses } );
+			return this;
+		}
+
+		Sample queryExecutionTimes( long[] counts ) {
+			this.queryExecutionTimes = counts;
+			return this;
+		}
+
+		private long rate( String name ) {
+			Long value = rates.get( name );
+			return value != null ? value : 0;
+		}
+
+		private long[] ratio( String name ) {
+			long[] value = ratios.get( name );
+			return value != null ? value : new long[2];
+		}
+	}
+}
@@ -8,6 +8,7 @@
  */
 package com.edlogics.elrc.config;
 
+import java.io.File;
 import java.net.MalformedURLException;
 import java.util.Collections;
 import java.util.Locale;
@@ -23,10 +24,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.DefaultErrorAttributes;
 import org.springframework.boot.autoconfigure.web.ErrorAttributes;
 import org.springframework.boot.autoconfigure.web.ResourceProperties;
 import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
@@ -47,7 +52,6 @@ import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.validation.beanvalidation.MethodValidationPostProcessor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.context.request.RequestAttributes;
-import org.springframework.web.filter.ShallowEtagHeaderFilter;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
@@ -59,6 +63,9 @@ import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 import org.springframework.web.servlet.i18n.CookieLocaleResolver;
 import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 import org.springframework.web.servlet.mvc.WebContentInterceptor;
+import org.springframework.web.servlet.resource.CachingResourceResolver;
+import org.springframework.web.servlet.resource.CachingResourceTransformer;
+import org.springframework.web.servlet.resource.GzipResourceResolver;
 import org.springframework.web.servlet.resource.VersionResourceResolver;
 import org.thymeleaf.extras.conditionalcomments.dialect.ConditionalCommentsDialect;
 import org.thymeleaf.processor.IProcessor;
@@ -72,8 +79,13 @@ import ch.mfrey.thymeleaf.extras.cache.CacheDialect;
 import com.edlogics.ElrcApplication;
 import com.edlogics.common.Constants;
 import com.edlogics.config.ApplicationSettings;
-import com.edlogics.elrc.config.temporary.CssLinkReplacementResourceTransformer;
-import com.edlogics.elrc.config.temporary.ProtocolRelativeCssLinkResourceTransformer;
+import com.edlogics.config.ApplicationSettings.ApplicationMediaProperties;
+import com.edlogics.elrc.config.resource.CachingResourceUrlProvider;
+import com.edlogics.elrc.config.resource.FileResourceHandlerAdapter;
+import com.edlogics.elrc.config.resource.ManifestVersionStrategy;
+import com.edlogics.elrc.config.resource.ResourceVersionManifest;
+import com.edlogics.elrc.config.resource.VaryByEncodingResourceResolver;
+import com.edlogics.elrc.config.temporary.CssLinkRewritingResourceTransformer;
 
 /**
  * @author Christopher Savory
@@ -118,6 +130,9 @@ public class WebConfig extends WebMvcConfigurerAdapter implements EnvironmentAwa
 	@Value("${app.media.url-root}")
 	String mediaUrlRoot;
 
+	@Value("${app.resource.file-serving.min-size:65536}")
+	private long fileServingMinSize;
+
 	private RelaxedPropertyResolver environment;
 
 	private String getProjectRootRequired() {
@@ -160,11 +175,17 @@ public class WebConfig extends WebMvcConfigurerAdapter implements EnvironmentAwa
 		boolean useResourceCache = !localMode;
 		String version = localMode ? "local" : this.appVersion;
 
-		ProtocolRelativeCssLinkResourceTransformer cssLinkResourceTransformer = new ProtocolRelativeCssLinkResourceTransformer();
-		CssLinkReplacementResourceTransformer cssLinkReplacementResourceTransformer = new CssLinkReplacementResourceTransformer( Constants.MEDIA_URL_ROOT_KEY_WITH_VARIABLE_SYNTAX, mediaUrlRoot );
-		VersionResourceResolver versionResolver = new VersionResourceResolver()
-				//.addFixedVersionStrategy( version, "/**/*.js" ) //Enable this if we use a JavaScript module loader
-				.addContentVersionStrategy( "/**" );
+		// resources are only versioned by their current content in local mode
+		CssLinkRewritingResourceTransformer cssLinkResourceTransformer = new CssLinkRewritingResourceTransformer( Constants.MEDIA_URL_ROOT_KEY_WITH_VARIABLE_SYNTAX, mediaUrlRoot,
+				fingerprintedResourcesEnabled, localMode );
+		VersionResourceResolver versionResolver = new VersionResourceResolver();
+		//versionResolver.addFixedVersionStrategy( version, "/**/*.js" ); //Enable this if we use a JavaScript module loader
+		if ( localMode ) {
+			versionResolver.addContentVersionStrategy( "/**" );
+		} else {
+			// versions hashed at build time, resources can't change in a deployed application
+			versionResolver.addVersionStrategy( new ManifestVersionStrategy( ResourceVersionManifest.load(), "static/" ), "/**" );
+		}
 
 		registry.addResourceHandler( "swagger-ui.html" )
 				.addResourceLocations( "classpath:/META-INF/resources/" );
@@ -175,12 +196,57 @@ public class WebConfig extends WebMvcConfigurerAdapter implements EnvironmentAwa
 						"/**/spa-artifacts/**/*.html" )
 				.addResourceLocations( location )
 				.setCachePeriod( this.fingerprintedCachePeriod )
-				.resourceChain( useResourceCache )
-				.addTransformer( cssLinkReplacementResourceTransformer );
+				// the caching resolver is added by hand as it must come after the Vary one
+				.resourceChain( false )
+				.addResolver( new VaryByEncodingResourceResolver() );
+
+		if ( useResourceCache ) {
+			// the .gz siblings are written when packaging, so only a packaged application has them up to date. The caching
+			// resolver caches the gzipped variants apart from the others.
+			Cache resourceChainCache = new ConcurrentMapCache( "spring-resource-chain-cache" );
+			registration.addResolver( new CachingResourceResolver( resourceChainCache ) )
+					.addResolver( new GzipResourceResolver() )
+					.addTransformer( new CachingResourceTransformer( resourceChainCache ) );
+		}
+		registration.addTransformer( cssLinkResourceTransformer );
 
 		if ( fingerprintedResourcesEnabled ) {
-			registration.addResolver( versionResolver ).addTransformer( cssLinkResourceTransformer );
+			registration.addResolver( versionResolver );
+		}
+
+		ApplicationMediaProperties mediaProperties = applicationSettings.getApplicationMediaConfig();
+		addMediaResourceHandler( registry, "/media/avatar-thumbs/**", mediaProperties.getAvatarThumbnailDirectory(), cachePeriod );
+		addMediaResourceHandler( registry, "/media/audio-head2head/**", mediaProperties.getAudioHead2headDirectory(), cachePeriod );
+		addMediaResourceHandler( registry, "/media/badges/**", mediaProperties.getBadgesDirectory(), cachePeriod );
+	}
+
+	/**
+	 * Serves a media directory when it is on the local file system, it's otherwise relative to the media URL root
+	 */
+	private void addMediaResourceHandler( ResourceHandlerRegistry registry, String pathPattern, String directory, Integer cachePeriod ) {
+		if ( !StringUtils.hasText( directory ) || !new File( directory ).isDirectory() ) {
+			return;
 		}
+		registry.addResourceHandler( pathPattern )
+				.addResourceLocations( new File( directory ).toURI().toString() )
+				.setCachePeriod( cachePeriod );
+	}
+
+	/**
+	 * Serves the large files of the resource handlers with sendfile instead of copying them through the heap
+	 */
+	@Bean
+	@ConditionalOnProperty(prefix = "app.resource.file-serving", name = "enabled", havingValue = "true")
+	public FileResourceHandlerAdapter fileResourceHandlerAdapter() {
+		return new FileResourceHandlerAdapter( fileServingMinSize );
+	}
+
+	/**
+	 * Caches the public URLs of the resources used when rendering links. Static so it doesn't pull in this configuration early.
+	 */
+	@Bean
+	public static BeanPostProcessor cachingResourceUrlProviderPostProcessor() {
+		return new CachingResourceUrlProvider.PostProcessor();
 	}
 
 	/**
@@ -200,16 +266,6 @@ public class WebConfig extends WebMvcConfigurerAdapter implements EnvironmentAwa
 		return cookieLocaleResolver;
 	}
 
-	/**
-	 * Will add ETags to responses; as well as 304 responses if appropriate
-	 * 
-	 * @return
-	 */
-	@Bean
-	public ShallowEtagHeaderFilter shallowEtagHeaderFilter() {
-		return new ShallowEtagHeaderFilter();
-	}
-
 	/**
 	 * Needed to enable validation at the method level using Bean and Hibernate
 	 * Validator.
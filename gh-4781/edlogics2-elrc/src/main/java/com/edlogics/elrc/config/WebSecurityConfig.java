@@ -13,6 +13,7 @@ import java.security.SecureRandom;
 import javax.annotation.Resource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -26,11 +27,13 @@ import org.springframework.security.core.token.KeyBasedPersistenceTokenService;
 import org.springframework.security.core.token.TokenService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.switchuser.SwitchUserFilter;
 import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
 
 import com.edlogics.authentication.CustomAuthenticationProvider;
+import com.edlogics.common.http.RequestClassifier;
 import com.edlogics.common.security.config.annotation.web.servlet.configuration.EnableWebMvcSecurity;
 import com.edlogics.config.ApplicationSettings;
 
@@ -56,9 +59,18 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 	@Resource(name = "customAuthenticationSuccessHandler")
 	private AuthenticationSuccessHandler customAuthenticationSuccessHandler;
 
+	@Resource(name = "customAuthenticationFailureHandler")
+	private AuthenticationFailureHandler customAuthenticationFailureHandler;
+
+	@Value("${app.security.password-verification.strength:10}")
+	private int passwordStrength;
+
 	@Autowired
 	ResourceUrlEncodingFilter resourceUrlEncodingFilter;
 
+	@Autowired
+	private RequestClassifier requestClassifier;
+
 	@Autowired
 	@Lazy
 	private CustomAuthenticationProvider customAuthenticationProvider;
@@ -85,7 +97,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 			.addFilterAfter( resourceUrlEncodingFilter() , SwitchUserFilter.class)
 			.formLogin()
 				.loginPage("/login")
-				.failureUrl("/login?error")
+				.failureHandler(this.customAuthenticationFailureHandler)
 				.defaultSuccessUrl("/")
 				.successHandler(this.customAuthenticationSuccessHandler)
 				.permitAll()
@@ -96,55 +108,11 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 				.permitAll()
 				.and()
 			.authorizeRequests()
-				.antMatchers("/").permitAll()
-				.antMatchers("/js/**").permitAll()
-				.antMatchers("/bower_components/**").permitAll()
-				.antMatchers("/css/**").permitAll()
-				.antMatchers("/less/**").permitAll()
-				.antMatchers("/img/**").permitAll()
-				.antMatchers("/fonts/**").permitAll()
-				.antMatchers("/json/**").permitAll()
-				.antMatchers("/spa-artifacts/**").permitAll()
-				.antMatchers("/ko-components/**").permitAll()
-				.antMatchers("/healthscratch/**/*.js").permitAll()
-
-				/* Begin: Swagger Console Permissions */
-				.antMatchers("/configuration/security").permitAll()
-				.antMatchers("/configuration/ui").permitAll()
-				.antMatchers("/swagger-resources").permitAll()
-				.antMatchers("/v2/api-docs").permitAll()
-				.antMatchers("/webjars/**").permitAll()
-				/* End: Swagger Console Permissions */
-
-				/* Some API content-driven services don't require any authentication */
-				.antMatchers("/message-service/**").permitAll()
-				.antMatchers("/feature-service/**").permitAll()
-				.antMatchers("/health-info-service/**").permitAll()
-				.antMatchers("/configuration-service/**").permitAll()
-				.antMatchers("/user-staging-service/**").permitAll()
-				.antMatchers("/activity-service/**").permitAll()
-				.antMatchers("/question-service/**").permitAll()
-
-				.antMatchers("/email/**").permitAll() 
-				.antMatchers("/sign-up/**").permitAll()
-				.antMatchers("/unsubscribe/**").permitAll()
-				.antMatchers("/join/**").permitAll()
-				.antMatchers("/remote-user/**").permitAll()
+				// the permitted paths are in RequestClassifierConfig
+				.requestMatchers(requestClassifier.permittedMatcher()).permitAll()
 				.antMatchers("/reports/**").hasAnyRole("ADMIN","CLIENT_ADMIN")
 				.antMatchers("/admin/**").hasRole("ADMIN")
 				.antMatchers("/j_spring_security_switch_user").hasRole("ADMIN") //Impersonate user URL
-				.antMatchers("/j_spring_security_exit_user").permitAll() //Quit impersonation
-				.antMatchers("/registration/**").permitAll()
-				.antMatchers("/profile-service/avatars").permitAll()
-				.antMatchers("/account/send-password-reset").permitAll()
-				.antMatchers("/account/reset-password/**").permitAll()
-				.antMatchers("/account/register/**").permitAll()
-				.antMatchers("/legal/terms").permitAll()
-				.antMatchers("/legal/privacy").permitAll()
-				.antMatchers("/help").permitAll()
-				.antMatchers("/rss").permitAll()
-				.antMatchers("/health").permitAll()
-				.antMatchers("/session-expired").permitAll()
 				.anyRequest().fullyAuthenticated()
 				.and();
 		// @formatter:on
@@ -164,7 +132,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
 	@Bean(name = "passwordEncoder")
 	public PasswordEncoder getPasswordEncoder() {
-		return new BCryptPasswordEncoder( 10 );
+		return new BCryptPasswordEncoder( passwordStrength );
 	}
 
 	@Bean(name = "switchUserFilter")
@@ -0,0 +1,121 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.resource;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A {@link ResourceUrlProvider} that remembers the public URL of every lookup path, so the {@link ResourceUrlEncodingFilter}
+ * doesn't match the path against every resource handler and walk the resolver chain for each link of each page.
+ * <p/>
+ * Paths that aren't resources are remembered too, as most links on a page are to controllers. The cache is bounded and is
+ * cleared when the context is refreshed or the handlers change. It must not be used where resources can change while the
+ * application runs, i.e. with the content version strategy in local mode.
+ *
+ * @author Christopher Savory
+ */
+public class CachingResourceUrlProvider extends ResourceUrlProvider {
+
+	private static final Logger logger = LoggerFactory.getLogger( CachingResourceUrlProvider.class );
+
+	private final Cache<String, Optional<String>> urls;
+
+	public CachingResourceUrlProvider( long maximumSize ) {
+		this.urls = CacheBuilder.newBuilder()
+				.maximumSize( maximumSize )
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public String getForLookupPath( String lookupPath ) {
+		Optional<String> url = urls.getIfPresent( lookupPath );
+		if ( url == null ) {
+			url = Optional.fromNullable( super.getForLookupPath( lookupPath ) );
+			urls.put( lookupPath, url );
+		}
+		return url.orNull();
+	}
+
+	@Override
+	public void setHandlerMap( Map<String, ResourceHttpRequestHandler> handlerMap ) {
+		super.setHandlerMap( handlerMap );
+		urls.invalidateAll();
+	}
+
+	@Override
+	public void onApplicationEvent( ContextRefreshedEvent event ) {
+		urls.invalidateAll();
+		super.onApplicationEvent( event );
+	}
+
+	public long size() {
+		return urls.size();
+	}
+
+	public CacheStats stats() {
+		return urls.stats();
+	}
+
+	/**
+	 * Puts a {@link CachingResourceUrlProvider} in place of the ResourceUrlProvider of the MVC configuration, which is the one
+	 * exposed to the {@link ResourceUrlEncodingFilter}. A bean of our own would not be used, as the configuration creates the
+	 * provider itself. Set app.resource.url-cache.enabled to false to keep the original.
+	 */
+	public static class PostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+		private RelaxedPropertyResolver properties;
+
+		@Override
+		public void setEnvironment( Environment environment ) {
+			this.properties = new RelaxedPropertyResolver( environment, "app.resource.url-cache." );
+		}
+
+		@Override
+		public Object postProcessBeforeInitialization( Object bean, String beanName ) throws BeansException {
+			if ( !( bean instanceof ResourceUrlProvider ) || bean instanceof CachingResourceUrlProvider
+					|| !properties.getProperty( "enabled", Boolean.class, true ) ) {
+				return bean;
+			}
+
+			ResourceUrlProvider provider = (ResourceUrlProvider) bean;
+			CachingResourceUrlProvider cachingProvider = new CachingResourceUrlProvider(
+					properties.getProperty( "maximum-size", Long.class, 2000L ) );
+			cachingProvider.setUrlPathHelper( provider.getUrlPathHelper() );
+			cachingProvider.setPathMatcher( provider.getPathMatcher() );
+			if ( !provider.getHandlerMap().isEmpty() ) {
+				cachingProvider.setHandlerMap( provider.getHandlerMap() );
+			}
+			logger.info( "Caching the resource URLs of " + beanName );
+			return cachingProvider;
+		}
+
+		@Override
+		public Object postProcessAfterInitialization( Object bean, String beanName ) throws BeansException {
+			return bean;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerAdapter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.resource.EncodedResource;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import org.springframework.web.servlet.resource.ResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import com.edlogics.common.http.filters.StreamingEtagFilter;
+
+/**
+ * Serves the large resources of the {@link ResourceHttpRequestHandler}s that are plain files, i.e. the exploded static
+ * resources and the media directories, without copying them through the heap: with Tomcat's sendfile when the connector
+ * supports it, and with {@link FileChannel#transferTo} otherwise. Single byte ranges are served the same way, so audio can
+ * be seeked.
+ * <p/>
+ * Everything else is left to the handler: small files, resources in jars, resources the transformers may change (CSS) or
+ * that have a precompressed variant, and requests for several ranges.
+ * <p/>
+ * The files served here are marked for the {@link StreamingEtagFilter}, which would otherwise hold back the ones up to its
+ * buffer size on the heap to digest them.
+ *
+ * @author Christopher Savory
+ */
+public class FileResourceHandlerAdapter implements HandlerAdapter, Ordered {
+
+	private static final Logger logger = LoggerFactory.getLogger( FileResourceHandlerAdapter.class );
+
+	private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+	private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+	private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+	private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+	/**
+	 * Rewritten by the CssLinkRewritingResourceTransformer
+	 */
+	private static final Set<String> TRANSFORMED_EXTENSIONS = new HashSet<>( Arrays.asList( "css", "less", "sass", "scss" ) );
+
+	private final long minSize;
+
+	/**
+	 * @param minSize the smallest file, in bytes, served from here
+	 */
+	public FileResourceHandlerAdapter( long minSize ) {
+		this.minSize = minSize;
+	}
+
+	@Override
+	public int getOrder() {
+		// before the HttpRequestHandlerAdapter
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+
+	@Override
+	public boolean supports( Object handler ) {
+		return handler instanceof ResourceHttpRequestHandler;
+	}
+
+	@Override
+	public ModelAndView handle( HttpServletRequest request, HttpServletResponse response, Object handler ) throws Exception {
+		ResourceHttpRequestHandler resourceHandler = (ResourceHttpRequestHandler) handler;
+		File file = findFile( request, resourceHandler );
+		if ( file == null || !serve( request, response, resourceHandler, file ) ) {
+			resourceHandler.handleRequest( request, response );
+		}
+		return null;
+	}
+
+	@Override
+	public long getLastModified( HttpServletRequest request, Object handler ) {
+		return -1;
+	}
+
+	/**
+	 * @return the file to serve, or null to leave the request to the handler
+	 */
+	private File findFile( HttpServletRequest request, ResourceHttpRequestHandler handler ) throws IOException {
+		if ( !"GET".equals( request.getMethod() ) && !"HEAD".equals( request.getMethod() ) ) {
+			return null;
+		}
+		String path = (String) request.getAttribute( HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE );
+		if ( path == null ) {
+			return null;
+		}
+		path = StringUtils.trimLeadingCharacter( path, '/' );
+		String extension = StringUtils.getFilenameExtension( path );
+		if ( !StringUtils.hasText( path ) || extension == null || isInvalidPath( path ) || StaticResourceCompressor.isCompressible( path )
+				|| TRANSFORMED_EXTENSIONS.contains( extension.toLowerCase( Locale.ENGLISH ) ) ) {
+			return null;
+		}
+
+		Resource resource = new ResolverChain( handler.getResourceResolvers(), 0 ).resolveResource( request, path, handler.getLocations() );
+		if ( resource == null || resource instanceof EncodedResource ) {
+			return null;
+		}
+		File file;
+		try {
+			file = resource.getFile();
+		} catch ( IOException e ) {
+			// in a jar
+			return null;
+		}
+		return file.isFile() && file.length() >= minSize ? file : null;
+	}
+
+	/**
+	 * The handler checks the same and answers 404, the resolvers check the resource is under one of the locations
+	 */
+	private boolean isInvalidPath( String path ) {
+		return path.contains( ".." ) || path.contains( ":" ) || path.contains( "%" ) || path.contains( "WEB-INF" )
+				|| path.contains( "META-INF" );
+	}
+
+	/**
+	 * @return false to leave the request to the handler
+	 */
+	private boolean serve( HttpServletRequest request, HttpServletResponse response, ResourceHttpRequestHandler handler, File file )
+			throws IOException {
+		long length = file.length();
+		long lastModified = file.lastModified();
+		if ( new ServletWebRequest( request, response ).checkNotModified( lastModified ) ) {
+			return true;
+		}
+
+		long start = 0;
+		long end = length - 1;
+		String rangeHeader = request.getHeader( HttpHeaders.RANGE );
+		if ( rangeHeader != null && isRangeApplicable( request, lastModified ) ) {
+			List<HttpRange> ranges;
+			try {
+				ranges = HttpRange.parseRanges( rangeHeader );
+			} catch ( IllegalArgumentException e ) {
+				ranges = null;
+			}
+			if ( ranges != null && ranges.size() > 1 ) {
+				// multipart/byteranges
+				return false;
+			}
+			if ( ranges == null || !ranges.isEmpty() && ranges.get( 0 ).getRangeStart( length ) >= length ) {
+				response.setHeader( HttpHeaders.CONTENT_RANGE, "bytes */" + length );
+				response.sendError( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+				return true;
+			}
+			if ( !ranges.isEmpty() ) {
+				start = ranges.get( 0 ).getRangeStart( length );
+				end = Math.min( ranges.get( 0 ).getRangeEnd( length ), length - 1 );
+				response.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+				response.setHeader( HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length );
+			}
+		}
+
+		String mediaType = request.getServletContext().getMimeType( file.getName() );
+		response.setContentType( mediaType != null ? mediaType : "application/octet-stream" );
+		response.setHeader( HttpHeaders.ACCEPT_RANGES, "bytes" );
+		setCacheControl( response, handler.getCacheSeconds() );
+		request.setAttribute( StreamingEtagFilter.STREAMED_ATTRIBUTE, Boolean.TRUE );
+		long count = end - start + 1;
+		response.setContentLengthLong( count );
+		if ( "HEAD".equals( request.getMethod() ) ) {
+			return true;
+		}
+
+		if ( Boolean.TRUE.equals( request.getAttribute( SENDFILE_SUPPORTED_ATTRIBUTE ) ) ) {
+			request.setAttribute( SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath() );
+			request.setAttribute( SENDFILE_START_ATTRIBUTE, start );
+			request.setAttribute( SENDFILE_END_ATTRIBUTE, end + 1 );
+		} else {
+			transfer( file, start, count, response );
+		}
+		return true;
+	}
+
+	/**
+	 * A Range with an If-Range for another version of the file gets the whole file. Only dates are compared, we don't know
+	 * the ETag the client may have.
+	 */
+	private boolean isRangeApplicable( HttpServletRequest request, long lastModified ) {
+		if ( request.getHeader( HttpHeaders.IF_RANGE ) == null ) {
+			return true;
+		}
+		try {
+			return request.getDateHeader( HttpHeaders.IF_RANGE ) / 1000 == lastModified / 1000;
+		} catch ( IllegalArgumentException e ) {
+			return false;
+		}
+	}
+
+	private void setCacheControl( HttpServletResponse response, int cacheSeconds ) {
+		if ( cacheSeconds > 0 ) {
+			response.setHeader( HttpHeaders.CACHE_CONTROL, CacheControl.maxAge( cacheSeconds, TimeUnit.SECONDS ).getHeaderValue() );
+		} else if ( cacheSeconds == 0 ) {
+			response.setHeader( HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue() );
+		}
+	}
+
+	private void transfer( File file, long start, long count, HttpServletResponse response ) throws IOException {
+		try (FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ )) {
+			WritableByteChannel out = Channels.newChannel( response.getOutputStream() );
+			long position = start;
+			long remaining = count;
+			while ( remaining > 0 ) {
+				long transferred = channel.transferTo( position, remaining, out );
+				if ( transferred <= 0 ) {
+					break;
+				}
+				position += transferred;
+				remaining -= transferred;
+			}
+		} catch ( IOException e ) {
+			// mostly clients going away in the middle of a large file
+			logger.debug( "Could not transfer " + file, e );
+		}
+	}
+
+	/**
+	 * Resolves through the resolvers of the handler the way it does itself, the resolver chain implementation of Spring being
+	 * package private
+	 */
+	private static final class ResolverChain implements ResourceResolverChain {
+
+		private final List<ResourceResolver> resolvers;
+
+		private final int index;
+
+		private ResolverChain( List<ResourceResolver> resolvers, int index ) {
+			this.resolvers = resolvers;
+			this.index = index;
+		}
+
+		@Override
+		public Resource resolveResource( HttpServletRequest request, String requestPath, List<? extends Resource> locations ) {
+			return index < resolvers.size()
+					? resolvers.get( index ).resolveResource( request, requestPath, locations, new ResolverChain( resolvers, index + 1 ) )
+					: null;
+		}
+
+		@Override
+		public String resolveUrlPath( String resourcePath, List<? extends Resource> locations ) {
+			return index < resolvers.size()
+					? resolvers.get( index ).resolveUrlPath( resourcePath, locations, new ResolverChain( resolvers, index + 1 ) )
+					: null;
+		}
+	}
+}
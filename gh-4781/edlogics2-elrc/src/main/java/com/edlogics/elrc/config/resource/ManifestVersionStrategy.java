@@ -0,0 +1,60 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.resource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.servlet.resource.AbstractVersionStrategy;
+import org.springframework.web.servlet.resource.ContentVersionStrategy;
+
+/**
+ * A content based version strategy, like the {@link ContentVersionStrategy}, that looks the versions up in the
+ * {@link ResourceVersionManifest} instead of hashing the resources. Resources missing from the manifest are hashed once and
+ * remembered, so this must only be used where resources don't change at runtime.
+ *
+ * @author Christopher Savory
+ */
+public class ManifestVersionStrategy extends AbstractVersionStrategy {
+
+	private final Map<String, String> versions;
+
+	private final String rootPath;
+
+	private final ContentVersionStrategy contentVersionStrategy = new ContentVersionStrategy();
+
+	private final ConcurrentMap<String, String> computedVersions = new ConcurrentHashMap<>();
+
+	/**
+	 * @param versions the versions by resource path, see {@link ResourceVersionManifest#load()}
+	 * @param rootPath the classpath location the manifest paths are relative to, e.g. "static/"
+	 */
+	public ManifestVersionStrategy( Map<String, String> versions, String rootPath ) {
+		super( new FileNameVersionPathStrategy() );
+		this.versions = versions;
+		this.rootPath = rootPath;
+	}
+
+	@Override
+	public String getResourceVersion( Resource resource ) {
+		if ( resource instanceof ClassPathResource ) {
+			String path = ( (ClassPathResource) resource ).getPath();
+			if ( path.startsWith( rootPath ) ) {
+				String version = versions.get( path.substring( rootPath.length() ) );
+				if ( version != null ) {
+					return version;
+				}
+			}
+		}
+		return computedVersions.computeIfAbsent( resource.getDescription(), description -> contentVersionStrategy.getResourceVersion( resource ) );
+	}
+}
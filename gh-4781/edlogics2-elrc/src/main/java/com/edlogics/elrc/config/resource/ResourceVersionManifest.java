@@ -0,0 +1,101 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.DigestUtils;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The content versions of the static resources, computed at build time so {@link ManifestVersionStrategy} doesn't have to
+ * hash the resources on request threads. Written by {@link #main(String[])}, run by the exec-maven-plugin in
+ * prepare-package, as a properties file of resource path (relative to the static directory) to MD5 hex, the same version
+ * the ContentVersionStrategy computes.
+ *
+ * @author Christopher Savory
+ */
+public final class ResourceVersionManifest {
+
+	public static final String LOCATION = "META-INF/resource-versions.properties";
+
+	private ResourceVersionManifest() {}
+
+	/**
+	 * @param args the static resource directory and the manifest file to write
+	 */
+	public static void main( String[] args ) throws IOException {
+		if ( args.length != 2 ) {
+			throw new IllegalArgumentException( "Usage: ResourceVersionManifest <static resource directory> <manifest file>" );
+		}
+		Path root = Paths.get( args[0] );
+		Path manifest = Paths.get( args[1] );
+		if ( !Files.isDirectory( root ) ) {
+			System.out.println( "No static resources in " + root + ", no version manifest written" );
+			return;
+		}
+
+		List<Path> files;
+		try ( Stream<Path> walk = Files.walk( root ) ) {
+			files = walk.filter( Files::isRegularFile ).filter( file -> !file.getFileName().toString().endsWith( ".gz" ) )
+					.collect( Collectors.toList() );
+		}
+		Map<String, String> versions = new ConcurrentHashMap<>();
+		files.parallelStream().forEach( file -> {
+			try {
+				versions.put( root.relativize( file ).toString().replace( '\\', '/' ), DigestUtils.md5DigestAsHex( Files.readAllBytes( file ) ) );
+			} catch ( IOException e ) {
+				throw new IllegalStateException( "Could not hash " + file, e );
+			}
+		} );
+
+		Properties properties = new Properties();
+		properties.putAll( versions );
+		Files.createDirectories( manifest.getParent() );
+		try ( OutputStream out = Files.newOutputStream( manifest ) ) {
+			properties.store( out, "Content versions of the static resources" );
+		}
+		System.out.println( "Wrote the versions of " + versions.size() + " static resources to " + manifest );
+	}
+
+	/**
+	 * @return the versions by resource path, empty if the manifest wasn't built
+	 */
+	public static Map<String, String> load() {
+		Resource resource = new ClassPathResource( LOCATION );
+		if ( !resource.exists() ) {
+			return ImmutableMap.of();
+		}
+		Properties properties = new Properties();
+		try ( InputStream in = resource.getInputStream() ) {
+			properties.load( in );
+		} catch ( IOException e ) {
+			throw new IllegalStateException( "Could not read " + LOCATION, e );
+		}
+		ImmutableMap.Builder<String, String> versions = ImmutableMap.builder();
+		for ( String path : properties.stringPropertyNames() ) {
+			versions.put( path, properties.getProperty( path ) );
+		}
+		return versions.build();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step, run by the exec-maven-plugin in prepare-package, that writes a .gz sibling next to every compressible static
+ * asset for the GzipResourceResolver to serve.
+ * <p/>
+ * Stylesheets are left out, their links are rewritten when they are served so a build time copy would be stale; images and
+ * fonts like woff are compressed already. Files smaller than {@link #MIN_SIZE}, or that don't get smaller, are skipped.
+ *
+ * @author Christopher Savory
+ */
+public final class StaticResourceCompressor {
+
+	public static final Set<String> EXTENSIONS = new HashSet<>( Arrays.asList( "js", "html", "svg", "json", "ttf", "otf", "eot", "map",
+			"txt", "xml" ) );
+
+	static final int MIN_SIZE = 1024;
+
+	private StaticResourceCompressor() {}
+
+	/**
+	 * @param args the static resource directory
+	 */
+	public static void main( String[] args ) throws IOException {
+		if ( args.length != 1 ) {
+			throw new IllegalArgumentException( "Usage: StaticResourceCompressor <static resource directory>" );
+		}
+		Path root = Paths.get( args[0] );
+		if ( !Files.isDirectory( root ) ) {
+			System.out.println( "No static resources in " + root + ", nothing to compress" );
+			return;
+		}
+
+		List<Path> files;
+		try ( Stream<Path> walk = Files.walk( root ) ) {
+			files = walk.filter( Files::isRegularFile ).filter( file -> isCompressible( file.getFileName().toString() ) )
+					.collect( Collectors.toList() );
+		}
+		long written = files.parallelStream().filter( StaticResourceCompressor::compress ).count();
+		System.out.println( "Precompressed " + written + " of " + files.size() + " static resources in " + root );
+	}
+
+	/**
+	 * @param name a file name
+	 * @return true if files with this name get a precompressed sibling
+	 */
+	public static boolean isCompressible( String name ) {
+		int dot = name.lastIndexOf( '.' );
+		return dot > 0 && EXTENSIONS.contains( name.substring( dot + 1 ).toLowerCase( Locale.ENGLISH ) );
+	}
+
+	private static boolean compress( Path file ) {
+		try {
+			byte[] content = Files.readAllBytes( file );
+			if ( content.length < MIN_SIZE ) {
+				return false;
+			}
+			Path gzipped = file.resolveSibling( file.getFileName() + ".gz" );
+			try ( OutputStream out = new GZIPOutputStream( Files.newOutputStream( gzipped ), 8192 ) {
+
+				{
+					def.setLevel( Deflater.BEST_COMPRESSION );
+				}
+			} ) {
+				out.write( content );
+			}
+			if ( Files.size( gzipped ) >= content.length ) {
+				Files.delete( gzipped );
+				return false;
+			}
+			// keep the timestamps equal so the resolver can tell a stale copy
+			Files.setLastModifiedTime( gzipped, Files.getLastModifiedTime( file ) );
+			return true;
+		} catch ( IOException e ) {
+			throw new IllegalStateException( "Could not compress " + file, e );
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.resource;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.GzipResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+/**
+ * Adds {@code Vary: Accept-Encoding} to the responses for the resources that can have a .gz sibling written by
+ * {@link StaticResourceCompressor}, whichever variant the {@link GzipResourceResolver} further down the chain picks, so a
+ * shared cache doesn't hand the gzipped one to a client that can't read it.
+ * <p/>
+ * Must come before the CachingResourceResolver, which would otherwise skip it for every resource it has cached. The header is
+ * also added for the few files too small to get a sibling, a lookup per request to tell them apart isn't worth it.
+ *
+ * @author Christopher Savory
+ */
+public class VaryByEncodingResourceResolver extends AbstractResourceResolver {
+
+	@Override
+	protected Resource resolveResourceInternal( HttpServletRequest request, String requestPath, List<? extends Resource> locations,
+			ResourceResolverChain chain ) {
+
+		Resource resource = chain.resolveResource( request, requestPath, locations );
+		if ( resource != null && request != null && resource.getFilename() != null
+				&& StaticResourceCompressor.isCompressible( resource.getFilename() ) ) {
+			addVaryHeader();
+		}
+		return resource;
+	}
+
+	@Override
+	protected String resolveUrlPathInternal( String resourceUrlPath, List<? extends Resource> locations, ResourceResolverChain chain ) {
+		return chain.resolveUrlPath( resourceUrlPath, locations );
+	}
+
+	private void addVaryHeader() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if ( attributes instanceof ServletRequestAttributes ) {
+			HttpServletResponse response = ( (ServletRequestAttributes) attributes ).getResponse();
+			if ( response != null && !isVaryingByEncoding( response ) ) {
+				response.addHeader( HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING );
+			}
+		}
+	}
+
+	/**
+	 * @return whether the Vary headers set before already cover the encoding
+	 */
+	private boolean isVaryingByEncoding( HttpServletResponse response ) {
+		for ( String vary : response.getHeaders( HttpHeaders.VARY ) ) {
+			for ( String header : vary.split( "," ) ) {
+				String name = header.trim();
+				if ( name.equals( "*" ) || name.equalsIgnoreCase( HttpHeaders.ACCEPT_ENCODING ) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
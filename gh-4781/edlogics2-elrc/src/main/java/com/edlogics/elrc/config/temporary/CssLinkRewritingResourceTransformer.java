@@ -0,0 +1,259 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.temporary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.resource.CssLinkResourceTransformer;
+import org.springframework.web.servlet.resource.ResourceTransformer;
+import org.springframework.web.servlet.resource.ResourceTransformerChain;
+import org.springframework.web.servlet.resource.TransformedResource;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A {@link ResourceTransformer} that rewrites the @import and url() links of CSS files in one pass: links to our own
+ * resources are replaced with their public URL paths (e.g. with an MD5 content-based hash inserted in the URL), and then the
+ * target, e.g. the media URL root variable, is replaced in every link without a scheme.
+ * <p>
+ * The content is scanned as bytes, which is safe for UTF-8 as the keywords and delimiters are all ASCII, and only the links
+ * themselves are decoded. Results are cached by resource and last modified time, so a changed file is transformed again.
+ * The resolved links depend on other resources though, e.g. on the hash of an image, so when those can change the results
+ * with resolved links are not cached.
+ * <p>
+ * Based on CssLinkResourceTransformer, which does not handle less or sass files. It extends it only so the resource chain
+ * doesn't add one next to the VersionResourceResolver.
+ *
+ * @author Christopher Savory
+ */
+public class CssLinkRewritingResourceTransformer extends CssLinkResourceTransformer {
+
+	private static final Logger logger = LoggerFactory.getLogger( CssLinkRewritingResourceTransformer.class );
+
+	private static final Charset DEFAULT_CHARSET = Charset.forName( "UTF-8" );
+
+	private static final byte[] IMPORT = "@import".getBytes( DEFAULT_CHARSET );
+
+	private static final byte[] URL = "url(".getBytes( DEFAULT_CHARSET );
+
+	private final String target;
+
+	private final String replacement;
+
+	private final boolean resolveUrlPaths;
+
+	private final boolean resourcesCanChange;
+
+	private final Cache<String, Transformed> cache = CacheBuilder.newBuilder().maximumSize( 1000 ).build();
+
+	/**
+	 * @param target the text to replace in every link without a scheme
+	 * @param replacement
+	 * @param resolveUrlPaths whether to replace the links to our own resources with their public URL paths
+	 */
+	public CssLinkRewritingResourceTransformer( CharSequence target, CharSequence replacement, boolean resolveUrlPaths ) {
+		this( target, replacement, resolveUrlPaths, true );
+	}
+
+	/**
+	 * @param target the text to replace in every link without a scheme
+	 * @param replacement
+	 * @param resolveUrlPaths whether to replace the links to our own resources with their public URL paths
+	 * @param resourcesCanChange whether the linked resources, and so their public URL paths, can change while running
+	 */
+	public CssLinkRewritingResourceTransformer( CharSequence target, CharSequence replacement, boolean resolveUrlPaths,
+			boolean resourcesCanChange ) {
+		this.target = target.toString();
+		this.replacement = replacement.toString();
+		this.resolveUrlPaths = resolveUrlPaths;
+		this.resourcesCanChange = resourcesCanChange;
+	}
+
+	@Override
+	public Resource transform( HttpServletRequest request, Resource resource, ResourceTransformerChain transformerChain )
+			throws IOException {
+
+		resource = transformerChain.transform( request, resource );
+
+		String extension = StringUtils.getFilenameExtension( resource.getFilename() );
+		boolean replace = "css".equals( extension ) || "less".equals( extension );
+		boolean resolve = resolveUrlPaths && ( replace || "sass".equals( extension ) || "scss".equals( extension ) );
+		if ( !replace && !resolve ) {
+			return resource;
+		}
+
+		// the resolved links can change without the resource changing
+		boolean cacheable = !( resolve && resourcesCanChange );
+		String key = resource.getDescription();
+		long lastModified = lastModified( resource );
+		Transformed transformed = cacheable ? cache.getIfPresent( key ) : null;
+		if ( transformed == null || transformed.lastModified != lastModified || lastModified == 0 ) {
+			if ( logger.isTraceEnabled() ) {
+				logger.trace( "Transforming resource: " + resource );
+			}
+			byte[] content = FileCopyUtils.copyToByteArray( resource.getInputStream() );
+			transformed = new Transformed( lastModified, rewrite( content, replace, resolve, request, resource, transformerChain ) );
+			if ( cacheable ) {
+				cache.put( key, transformed );
+			}
+		}
+
+		return transformed.content != null ? new TransformedResource( resource, transformed.content ) : resource;
+	}
+
+	/**
+	 * @return the rewritten content, or null if there are no links
+	 */
+	private byte[] rewrite( byte[] content, boolean replace, boolean resolve, HttpServletRequest request, Resource resource,
+			ResourceTransformerChain transformerChain ) {
+		ByteArrayOutputStream out = null;
+		int copied = 0;
+		int index = 0;
+		while ( index < content.length ) {
+			int start;
+			int end;
+			if ( matches( content, index, IMPORT ) ) {
+				int next = skipWhitespace( content, index + IMPORT.length );
+				if ( next >= content.length || content[next] != '\'' && content[next] != '"' ) {
+					// @import url(...) is taken care of by the url( keyword
+					index = next;
+					continue;
+				}
+				start = next + 1;
+				end = indexOf( content, content[next], start );
+			} else if ( matches( content, index, URL ) ) {
+				int next = skipWhitespace( content, index + URL.length );
+				if ( next < content.length && ( content[next] == '\'' || content[next] == '"' ) ) {
+					start = next + 1;
+					end = indexOf( content, content[next], start );
+				} else {
+					start = next;
+					end = indexOf( content, (byte) ')', start );
+				}
+			} else {
+				index++;
+				continue;
+			}
+			if ( end < 0 ) {
+				break;
+			}
+
+			String link = new String( content, start, end - start, DEFAULT_CHARSET );
+			String newLink = rewriteLink( link, replace, resolve, request, resource, transformerChain );
+			if ( !link.equals( newLink ) ) {
+				if ( out == null ) {
+					out = new ByteArrayOutputStream( content.length + 256 );
+				}
+				out.write( content, copied, start - copied );
+				byte[] newBytes = newLink.getBytes( DEFAULT_CHARSET );
+				out.write( newBytes, 0, newBytes.length );
+				copied = end;
+			}
+			index = end + 1;
+		}
+
+		if ( out == null ) {
+			if ( logger.isTraceEnabled() ) {
+				logger.trace( "No links modified." );
+			}
+			return null;
+		}
+		out.write( content, copied, content.length - copied );
+		return out.toByteArray();
+	}
+
+	private String rewriteLink( String link, boolean replace, boolean resolve, HttpServletRequest request, Resource resource,
+			ResourceTransformerChain transformerChain ) {
+		String newLink = link;
+		if ( resolve && !hasScheme( newLink ) ) {
+			String resolved = resolveUrlPath( newLink, request, resource, transformerChain );
+			if ( resolved != null ) {
+				newLink = resolved;
+			}
+		}
+		if ( replace && !hasScheme( newLink ) ) {
+			newLink = newLink.replace( target, replacement );
+		}
+		if ( logger.isTraceEnabled() ) {
+			if ( !link.equals( newLink ) ) {
+				logger.trace( "Link modified: " + newLink + " (original: " + link + ")" );
+			} else {
+				logger.trace( "Link not modified: " + link );
+			}
+		}
+		return newLink;
+	}
+
+	private long lastModified( Resource resource ) {
+		try {
+			return resource.lastModified();
+		} catch ( IOException e ) {
+			// can't tell if it changed, transform it every time
+			return 0;
+		}
+	}
+
+	private boolean hasScheme( String link ) {
+		int schemeIndex = link.indexOf( ":" );
+		return ( schemeIndex > 0 && !link.substring( 0, schemeIndex ).contains( "/" ) ) || link.startsWith( "//" );
+	}
+
+	private static boolean matches( byte[] content, int index, byte[] keyword ) {
+		if ( index + keyword.length > content.length ) {
+			return false;
+		}
+		for ( int i = 0; i < keyword.length; i++ ) {
+			if ( content[index + i] != keyword[i] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int skipWhitespace( byte[] content, int index ) {
+		while ( index < content.length && Character.isWhitespace( content[index] ) ) {
+			index++;
+		}
+		return index;
+	}
+
+	private static int indexOf( byte[] content, byte value, int from ) {
+		for ( int i = from; i < content.length; i++ ) {
+			if ( content[i] == value ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static class Transformed {
+
+		private final long lastModified;
+
+		/**
+		 * null when the resource is served as it is
+		 */
+		private final byte[] content;
+
+		private Transformed( long lastModified, byte[] content ) {
+			this.lastModified = lastModified;
+			this.content = content;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import com.edlogics.common.http.RequestClassifier;
+import com.edlogics.common.http.RequestClassifier.Category;
+import com.edlogics.common.http.RequestClassifier.Classification;
+
+/**
+ * The matching every request went through before the {@link RequestClassifier}: the extension checks of the SimpleCorsFilter
+ * and the SimpleFilter, and the ant matchers of the WebSecurityConfig up to the first match, against the classifier doing the
+ * same once and the filters and the security matcher sharing the result.
+ * <p/>
+ * Protected pages, e.g. /account/settings, were the worst case, as they were matched against every pattern.
+ * <p/>
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.edlogics.elrc.config.RequestClassifierBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author Christopher Savory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RequestClassifierBenchmark {
+
+	/**
+	 * The authorizeRequests() ant matchers of the WebSecurityConfig before the classifier, in their order
+	 */
+	static final String[] ANT_PATTERNS = { "/", "/js/**", "/bower_components/**", "/css/**", "/less/**", "/img/**",
+			"/fonts/**", "/json/**", "/spa-artifacts/**", "/ko-components/**", "/healthscratch/**/*.js", "/configuration/security",
+			"/configuration/ui", "/swagger-resources", "/v2/api-docs", "/webjars/**", "/message-service/**", "/feature-service/**",
+			"/health-info-service/**", "/configuration-service/**", "/user-staging-service/**", "/activity-service/**",
+			"/question-service/**", "/email/**", "/sign-up/**", "/unsubscribe/**", "/join/**", "/remote-user/**", "/reports/**",
+			"/admin/**", "/j_spring_security_switch_user", "/j_spring_security_exit_user", "/registration/**",
+			"/profile-service/avatars", "/account/send-password-reset", "/account/reset-password/**", "/account/register/**",
+			"/legal/terms", "/legal/privacy", "/help", "/rss", "/health", "/session-expired" };
+
+	/**
+	 * The extensions the SimpleCorsFilter checked the end of the URI for
+	 */
+	private static final String[] CORS_SUFFIXES = { "ttf", "ttc", "otf", "eot", "woff", "font.css", "css", "less" };
+
+	@Param({ "/js/app/main.js", "/fonts/opensans.woff2", "/message-service/messages/12", "/help", "/account/settings" })
+	String path;
+
+	MockHttpServletRequest request;
+
+	List<RequestMatcher> antMatchers;
+
+	RequestClassifier requestClassifier;
+
+	@Setup
+	public void setUp() {
+		request = new MockHttpServletRequest( "GET", path );
+		request.setServletPath( path );
+		antMatchers = new ArrayList<>();
+		for ( String pattern : ANT_PATTERNS ) {
+			antMatchers.add( new AntPathRequestMatcher( pattern ) );
+		}
+		requestClassifier = new RequestClassifierConfig().requestClassifier();
+	}
+
+	@Benchmark
+	public int antMatchers() {
+		String uri = request.getRequestURI();
+		boolean cors = false;
+		for ( String suffix : CORS_SUFFIXES ) {
+			if ( StringUtils.endsWithIgnoreCase( uri, suffix ) ) {
+				cors = true;
+				break;
+			}
+		}
+		boolean json = uri.endsWith( ".json" );
+		int matched = -1;
+		for ( int i = 0; i < antMatchers.size() && matched < 0; i++ ) {
+			if ( antMatchers.get( i ).matches( request ) ) {
+				matched = i;
+			}
+		}
+		return matched + ( cors ? 100 : 0 ) + ( json ? 1000 : 0 );
+	}
+
+	@Benchmark
+	public int classifier() {
+		// a new request every time, the filters after the first one get the request attribute
+		request.removeAttribute( RequestClassifier.CLASSIFICATION_ATTRIBUTE );
+		Category category = requestClassifier.classify( request ).getCategory();
+		boolean cors = category == Category.FONT || category == Category.STYLESHEET;
+		boolean json = "json".equals( requestClassifier.classify( request ).getExtension() );
+		Classification classification = requestClassifier.classify( request );
+		return ( classification.isPermitted() ? 1 : 0 ) + ( cors ? 100 : 0 ) + ( json ? 1000 : 0 );
+	}
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder()
+				.include( RequestClassifierBenchmark.class.getSimpleName() )
+				.build() ).run();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import com.edlogics.common.http.RequestClassifier;
+
+/**
+ * The {@link RequestClassifier} permits the same requests the authorizeRequests() ant matchers of the WebSecurityConfig did
+ * before it: a request was permitted when the first pattern it matched was a permitAll one.
+ *
+ * @author Christopher Savory
+ */
+public class RequestClassifierConfigTest {
+
+	/**
+	 * The patterns of the old list that needed a role, and stay in the WebSecurityConfig
+	 */
+	private static final Set<String> ROLE_PATTERNS = new LinkedHashSet<>( Arrays.asList( "/reports/**", "/admin/**",
+			"/j_spring_security_switch_user" ) );
+
+	private static final String[] PATHS = { "/", "/js", "/js/", "/js/x", "/js/app/main.js", "/jsx", "/JS/app.js", "/css/main.CSS",
+			"/healthscratch", "/healthscratch/", "/healthscratch/b.js", "/healthscratch/a/b.js", "/healthscratch/a/b.js/",
+			"/healthscratch/a/b.JS", "/healthscratch/a/b.Js", "/healthscratch/a/b.json", "/healthscratch/a/b.js.map",
+			"/healthscratch/a/.js", "/healthscratch.js", "/fonts/opensans.WOFF", "/admin/main.css", "/admin/x/theme.less",
+			"/reports/summary.js", "/j_spring_security_switch_user", "/j_spring_security_exit_user/", "/help/", "/Help",
+			"/health", "/health/", "/healthy", "/profile-service/avatars/12", "/account/settings", "/account/register",
+			"/legal/terms.html", "/message-service/messages/12", "/favicon.ico", "/main.css", "/img.png/x" };
+
+	private List<AntPathRequestMatcher> antMatchers;
+
+	private RequestClassifier requestClassifier;
+
+	@Before
+	public void setUp() {
+		antMatchers = new ArrayList<>();
+		for ( String pattern : RequestClassifierBenchmark.ANT_PATTERNS ) {
+			antMatchers.add( new AntPathRequestMatcher( pattern ) );
+		}
+		requestClassifier = new RequestClassifierConfig().requestClassifier();
+	}
+
+	@Test
+	public void testPaths() {
+		for ( String path : PATHS ) {
+			assertPermittedAsBefore( path );
+		}
+	}
+
+	/**
+	 * Every pattern itself, with a trailing slash, below it, and in another case
+	 */
+	@Test
+	public void testPatterns() {
+		for ( String pattern : RequestClassifierBenchmark.ANT_PATTERNS ) {
+			// the firewall rejects paths with //, so / only gets what is below it
+			String path = pattern.replace( "/**/*.js", "/a/b.js" ).replace( "/**", "" ).replaceFirst( "^/$", "" );
+			String itself = path.isEmpty() ? "/" : path;
+			assertPermittedAsBefore( itself );
+			assertPermittedAsBefore( path + "/" );
+			assertPermittedAsBefore( path + "/x" );
+			assertPermittedAsBefore( path + "/x/y.js" );
+			assertPermittedAsBefore( itself.toUpperCase() );
+		}
+	}
+
+	private void assertPermittedAsBefore( String path ) {
+		MockHttpServletRequest request = new MockHttpServletRequest( "GET", path );
+		request.setServletPath( path );
+		assertEquals( path, isPermittedByAntMatchers( request ), requestClassifier.classify( request ).isPermitted() );
+	}
+
+	private boolean isPermittedByAntMatchers( MockHttpServletRequest request ) {
+		for ( AntPathRequestMatcher antMatcher : antMatchers ) {
+			if ( antMatcher.matches( request ) ) {
+				return !ROLE_PATTERNS.contains( antMatcher.getPattern() );
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ *
+ * Copyright EdLogics, LLC. All Rights Reserved.
+ *
+ * This software is the proprietary information of EdLogics, LLC.
+ * Use is subject to license terms.
+ *
+ */
+package com.edlogics.elrc.config.temporary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+import org.springframework.web.servlet.resource.ResourceTransformerChain;
+
+import com.edlogics.common.Constants;
+
+/**
+ * The {@link CssLinkRewritingResourceTransformer} on a CSS bundle: rewriting every link of it, which is what every request
+ * cost before the results were cached and what a changed file still costs, and serving it from the cache.
+ * <p/>
+ * The bundles are built by the front end build and are not in the repository, so pass the largest one, e.g.
+ * -Dcss=target/classes/static/css/main.css. Without it a generated bundle of about the same size and link density is used.
+ * <p/>
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.edlogics.elrc.config.temporary.CssLinkRewritingResourceTransformerBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author Christopher Savory
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CssLinkRewritingResourceTransformerBenchmark {
+
+	private static final String MEDIA_URL_ROOT = "https://media.example.com/elrc";
+
+	@Param("")
+	String css;
+
+	final HttpServletRequest request = new MockHttpServletRequest( "GET", "/css/main.css" );
+
+	final ResourceTransformerChain chain = new ResourceTransformerChain() {
+
+		@Override
+		public ResourceResolverChain getResolverChain() {
+			return null;
+		}
+
+		@Override
+		public Resource transform( HttpServletRequest request, Resource resource ) throws IOException {
+			return resource;
+		}
+	};
+
+	CssLinkRewritingResourceTransformer rewritingTransformer;
+
+	CssLinkRewritingResourceTransformer cachingTransformer;
+
+	Resource changingResource;
+
+	Resource unchangedResource;
+
+	@Setup
+	public void setUp() throws IOException {
+		byte[] content = css.isEmpty() ? generateBundle() : Files.readAllBytes( new File( css ).toPath() );
+		rewritingTransformer = new CssLinkRewritingResourceTransformer( Constants.MEDIA_URL_ROOT_KEY_WITH_VARIABLE_SYNTAX, MEDIA_URL_ROOT,
+				false );
+		cachingTransformer = new CssLinkRewritingResourceTransformer( Constants.MEDIA_URL_ROOT_KEY_WITH_VARIABLE_SYNTAX, MEDIA_URL_ROOT,
+				false );
+		// a last modified time of 0 means the transformer can't tell whether it changed
+		changingResource = new CssResource( content, 0 );
+		unchangedResource = new CssResource( content, System.currentTimeMillis() );
+	}
+
+	@Benchmark
+	public Resource rewrite() throws IOException {
+		return rewritingTransformer.transform( request, changingResource, chain );
+	}
+
+	@Benchmark
+	public Resource cached() throws IOException {
+		return cachingTransformer.transform( request, unchangedResource, chain );
+	}
+
+	/**
+	 * About 400KB of rules, one in three with a link to the media root, and some absolute and data links that are left alone
+	 */
+	private static byte[] generateBundle() {
+		StringBuilder bundle = new StringBuilder( 450 * 1024 );
+		bundle.append( "@import \"" ).append( Constants.MEDIA_URL_ROOT_KEY_WITH_VARIABLE_SYNTAX ).append( "/css/fonts.css\";\n" );
+		bundle.append( "@import url(https://fonts.googleapis.com/css?family=Open+Sans);\n" );
+		for ( int i = 0; bundle.length() < 400 * 1024; i++ ) {
+			bundle.append( ".component-" ).append( i ).append( " .item:hover > a {\n" );
+			bundle.append( "\tmargin: 0 auto;\n\tpadding: 4px 8px;\n\tcolor: #3a3a3a;\n\tborder: 1px solid rgba(0, 0, 0, 0.1);\n" );
+			if ( i % 3 == 0 ) {
+				bundle.append( "\tbackground: url('" ).append( Constants.MEDIA_URL_ROOT_KEY_WITH_VARIABLE_SYNTAX ).append( "/img/icons/icon-" )
+						.append( i ).append( ".png') no-repeat;\n" );
+			} else if ( i % 10 == 1 ) {
+				bundle.append( "\tbackground: url(data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7);\n" );
+			} else if ( i % 10 == 2 ) {
+				bundle.append( "\tbackground-image: url(\"//cdn.example.com/img/bg-" ).append( i ).append( ".jpg\");\n" );
+			}
+			bundle.append( "}\n" );
+		}
+		return bundle.toString().getBytes( StandardCharsets.UTF_8 );
+	}
+
+	private static class CssResource extends ByteArrayResource {
+
+		private final long lastModified;
+
+		CssResource( byte[] content, long lastModified ) {
+			super( content );
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public String getFilename() {
+			return "main.css";
+		}
+
+		@Override
+		public long lastModified() {
+			return lastModified;
+		}
+
+		@Override
+		public String getDescription() {
+			return "CSS bundle [main.css]";
+		}
+	}
+
+	public static void main( String[] args ) throws RunnerException {
+		new Runner( new OptionsBuilder()
+				.include( CssLinkRewritingResourceTransformerBenchmark.class.getSimpleName() )
+				.param( "css", System.getProperty( "css", "" ) )
+				.build() ).run();
+	}
+}